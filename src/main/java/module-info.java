@@ -6,7 +6,6 @@ module physicscalculator {
     requires javafx.swing;
     requires ch.obermuhlner.math.big;
     requires jlatexmath;
-    requires jscience;
     requires tools.jackson.databind;
 
     opens ui to javafx.fxml;
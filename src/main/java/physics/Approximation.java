@@ -0,0 +1,17 @@
+package physics;
+
+/**
+ * The result of evaluating an equation to a reduced precision
+ * @param quantity The computed result
+ * @param error Bound on the absolute error of the result in base SI units, or 0 if it was computed in full
+ */
+public record Approximation(Quantity quantity, double error) {
+    /**
+     * Checks whether the result can be displayed to the given number of significant figures without recomputing it
+     * @param sigFigs Number of significant figures to be displayed
+     * @return Returns true if every value within the error bound is displayed the same way, false otherwise
+     */
+    public boolean isStable(int sigFigs) {
+        return error == 0 || BoundedEvaluator.isStable(quantity.getNumericValue(), error, sigFigs);
+    }
+}
@@ -0,0 +1,520 @@
+package physics;
+
+import ch.obermuhlner.math.big.BigDecimalMath;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import static physics.Quantity.MC;
+import static physics.Quantity.RM;
+
+/**
+ * The numeric part of every operation on a Quantity, with the dimensions left out.
+ * Quantity uses these for its values, and Programs whose dimensions have already been checked use them directly.
+ * Each operation can also be computed to a reduced precision, for results that are only displayed.
+ * Functions are named as in Program.FUNCTIONS, which generated programs rely on, and their results may be
+ * remembered by a FunctionCache.
+ */
+class Arithmetic {
+    // Largest integer exponent BigDecimal.pow accepts
+    private static final double MAX_INTEGER_EXPONENT = 999999999;
+    // Largest integer exponent for which powers are computed exactly before rounding
+    private static final int EXACT_EXPONENT = 16;
+
+    // Cache consulted by every function, or null to compute each call
+    private static volatile FunctionCache functionCache;
+
+    /**
+     * Sets the cache consulted by every function
+     * @param cache The cache to be used, or null to compute each call
+     */
+    static void setFunctionCache(FunctionCache cache) {
+        functionCache = cache;
+    }
+
+    /**
+     * Computes a function, or looks up its value if a FunctionCache is in use
+     * @param function Name of the function, as in Program.FUNCTIONS
+     * @param x The argument
+     * @param mc Precision of the result
+     * @param computation Computes the function
+     * @return Returns the value of the function
+     */
+    private static BigDecimal compute(String function, BigDecimal x, MathContext mc,
+                                      FunctionCache.Computation computation) {
+        FunctionCache cache = functionCache;
+        if (cache == null)
+            return computation.apply(x, mc);
+
+        return cache.get(function, x, mc, computation);
+    }
+
+    /**
+     * Adds two values
+     * @param a The first value
+     * @param b The second value
+     * @return Returns a + b
+     */
+    static BigDecimal add(BigDecimal a, BigDecimal b) {
+        return a.add(b);
+    }
+
+    /**
+     * Adds two values
+     * @param a The first value
+     * @param b The second value
+     * @param mc Precision of the result
+     * @return Returns a + b
+     */
+    static BigDecimal add(BigDecimal a, BigDecimal b, MathContext mc) {
+        return a.add(b, mc);
+    }
+
+    /**
+     * Subtracts two values
+     * @param a The first value
+     * @param b The second value
+     * @return Returns a - b
+     */
+    static BigDecimal subtract(BigDecimal a, BigDecimal b) {
+        return a.subtract(b);
+    }
+
+    /**
+     * Subtracts two values
+     * @param a The first value
+     * @param b The second value
+     * @param mc Precision of the result
+     * @return Returns a - b
+     */
+    static BigDecimal subtract(BigDecimal a, BigDecimal b, MathContext mc) {
+        return a.subtract(b, mc);
+    }
+
+    /**
+     * Multiplies two values
+     * @param a The first value
+     * @param b The second value
+     * @return Returns a * b
+     */
+    static BigDecimal multiply(BigDecimal a, BigDecimal b) {
+        return a.multiply(b);
+    }
+
+    /**
+     * Multiplies two values
+     * @param a The first value
+     * @param b The second value
+     * @param mc Precision of the result
+     * @return Returns a * b
+     */
+    static BigDecimal multiply(BigDecimal a, BigDecimal b, MathContext mc) {
+        return a.multiply(b, mc);
+    }
+
+    /**
+     * Divides two values, keeping the scale of the dividend
+     * @param a The dividend
+     * @param b The divisor
+     * @return Returns a / b
+     */
+    static BigDecimal divide(BigDecimal a, BigDecimal b) {
+        return a.divide(b, RM);
+    }
+
+    /**
+     * Divides two values
+     * @param a The dividend
+     * @param b The divisor
+     * @param mc Precision of the result
+     * @return Returns a / b
+     */
+    static BigDecimal divide(BigDecimal a, BigDecimal b, MathContext mc) {
+        return a.divide(b, mc);
+    }
+
+    /**
+     * Raises a value to a power
+     * @param a The base
+     * @param n The exponent
+     * @return Returns a^n
+     */
+    static BigDecimal pow(BigDecimal a, BigDecimal n) {
+        return pow(a, n, MC);
+    }
+
+    /**
+     * Raises a value to a power.
+     * Integer exponents are computed by repeated squaring, and rational exponents of positive bases by taking a root
+     * and raising it to the integer numerator. Only other exponents need the general logarithm based algorithm.
+     * @param a The base
+     * @param n The exponent
+     * @param mc Precision of the result
+     * @return Returns a^n
+     */
+    static BigDecimal pow(BigDecimal a, BigDecimal n, MathContext mc) {
+        double approximate = n.doubleValue();
+        if (!(Math.abs(approximate) < MAX_INTEGER_EXPONENT))
+            return BigDecimalMath.pow(a, n, mc);
+
+        // Only an exponent that is an integer as a double can be one exactly
+        int exponent = (int) approximate;
+        if (exponent == approximate && n.compareTo(BigDecimal.valueOf(exponent)) == 0) {
+            if (Math.abs(exponent) <= EXACT_EXPONENT)
+                return integerPow(a, exponent, mc);
+
+            // BigDecimal.pow also refuses exponents with more digits than the precision
+            if (digits(exponent) <= mc.getPrecision())
+                return a.pow(exponent, mc);
+
+            return BigDecimalMath.pow(a, n, mc);
+        }
+
+        int divisor = Quantity.isRational(n);
+        if (divisor > 1 && a.signum() > 0) {
+            int numerator = Quantity.numerator(n, divisor);
+            // Raising the root to the numerator multiplies its relative error by the numerator
+            MathContext working = new MathContext(mc.getPrecision() + 2 + digits(numerator), mc.getRoundingMode());
+            BigDecimal root = divisor == 2 ? a.sqrt(working) : BigDecimalMath.root(a, BigDecimal.valueOf(divisor), working);
+
+            return (numerator == 1 ? root : root.pow(numerator, working)).round(mc);
+        }
+
+        return BigDecimalMath.pow(a, n, mc);
+    }
+
+    /**
+     * Raises a value to a small integer power by repeated squaring. The products are kept exact, so the result is
+     * only rounded once
+     * @param a The base
+     * @param n The exponent, no larger in magnitude than EXACT_EXPONENT
+     * @param mc Precision of the result
+     * @return Returns a^n
+     */
+    private static BigDecimal integerPow(BigDecimal a, int n, MathContext mc) {
+        BigDecimal result = BigDecimal.ONE;
+        BigDecimal square = a;
+
+        for (int e = Math.abs(n); e > 0; e >>= 1) {
+            if ((e & 1) == 1)
+                result = result.multiply(square);
+            if (e > 1)
+                square = square.multiply(square);
+        }
+
+        return n < 0 ? BigDecimal.ONE.divide(result, mc) : result.round(mc);
+    }
+
+    /**
+     * Counts the decimal digits of an integer
+     * @param n The integer
+     * @return Returns the number of digits in the magnitude of n
+     */
+    private static int digits(int n) {
+        return String.valueOf(Math.abs((long) n)).length();
+    }
+
+    /**
+     * Computes the square root of a value
+     * @param x The value
+     * @return Returns sqrt(x)
+     */
+    static BigDecimal sqrt(BigDecimal x) {
+        return sqrt(x, MC);
+    }
+
+    /**
+     * Computes the square root of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns sqrt(x)
+     */
+    static BigDecimal sqrt(BigDecimal x, MathContext mc) {
+        return compute("sqrt", x, mc, BigDecimalMath::sqrt);
+    }
+
+    /**
+     * Computes the natural log of a value
+     * @param x The value
+     * @return Returns ln(x)
+     */
+    static BigDecimal ln(BigDecimal x) {
+        return ln(x, MC);
+    }
+
+    /**
+     * Computes the natural log of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns ln(x)
+     */
+    static BigDecimal ln(BigDecimal x, MathContext mc) {
+        return compute("ln", x, mc, BigDecimalMath::log);
+    }
+
+    /**
+     * Computes the base 10 log of a value
+     * @param x The value
+     * @return Returns log(x)
+     */
+    static BigDecimal log(BigDecimal x) {
+        return log(x, MC);
+    }
+
+    /**
+     * Computes the base 10 log of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns log(x)
+     */
+    static BigDecimal log(BigDecimal x, MathContext mc) {
+        return compute("log", x, mc, BigDecimalMath::log10);
+    }
+
+    /**
+     * Computes the exponential of a value
+     * @param x The value
+     * @return Returns exp(x)
+     */
+    static BigDecimal exp(BigDecimal x) {
+        return exp(x, MC);
+    }
+
+    /**
+     * Computes the exponential of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns exp(x)
+     */
+    static BigDecimal exp(BigDecimal x, MathContext mc) {
+        return compute("exp", x, mc, BigDecimalMath::exp);
+    }
+
+    /**
+     * Computes the sine of a value
+     * @param x The value
+     * @return Returns sin(x)
+     */
+    static BigDecimal sin(BigDecimal x) {
+        return sin(x, MC);
+    }
+
+    /**
+     * Computes the sine of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns sin(x)
+     */
+    static BigDecimal sin(BigDecimal x, MathContext mc) {
+        return compute("sin", x, mc, BigDecimalMath::sin);
+    }
+
+    /**
+     * Computes the cosine of a value
+     * @param x The value
+     * @return Returns cos(x)
+     */
+    static BigDecimal cos(BigDecimal x) {
+        return cos(x, MC);
+    }
+
+    /**
+     * Computes the cosine of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns cos(x)
+     */
+    static BigDecimal cos(BigDecimal x, MathContext mc) {
+        return compute("cos", x, mc, BigDecimalMath::cos);
+    }
+
+    /**
+     * Computes the tangent of a value
+     * @param x The value
+     * @return Returns tan(x)
+     */
+    static BigDecimal tan(BigDecimal x) {
+        return tan(x, MC);
+    }
+
+    /**
+     * Computes the tangent of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns tan(x)
+     */
+    static BigDecimal tan(BigDecimal x, MathContext mc) {
+        return compute("tan", x, mc, BigDecimalMath::tan);
+    }
+
+    /**
+     * Computes the inverse sine of a value
+     * @param x The value
+     * @return Returns asin(x)
+     */
+    static BigDecimal asin(BigDecimal x) {
+        return asin(x, MC);
+    }
+
+    /**
+     * Computes the inverse sine of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns asin(x)
+     */
+    static BigDecimal asin(BigDecimal x, MathContext mc) {
+        return compute("asin", x, mc, BigDecimalMath::asin);
+    }
+
+    /**
+     * Computes the inverse cosine of a value
+     * @param x The value
+     * @return Returns acos(x)
+     */
+    static BigDecimal acos(BigDecimal x) {
+        return acos(x, MC);
+    }
+
+    /**
+     * Computes the inverse cosine of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns acos(x)
+     */
+    static BigDecimal acos(BigDecimal x, MathContext mc) {
+        return compute("acos", x, mc, BigDecimalMath::acos);
+    }
+
+    /**
+     * Computes the inverse tangent of a value
+     * @param x The value
+     * @return Returns atan(x)
+     */
+    static BigDecimal atan(BigDecimal x) {
+        return atan(x, MC);
+    }
+
+    /**
+     * Computes the inverse tangent of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns atan(x)
+     */
+    static BigDecimal atan(BigDecimal x, MathContext mc) {
+        return compute("atan", x, mc, BigDecimalMath::atan);
+    }
+
+    /**
+     * Computes the hyperbolic sine of a value
+     * @param x The value
+     * @return Returns sinh(x)
+     */
+    static BigDecimal sinh(BigDecimal x) {
+        return sinh(x, MC);
+    }
+
+    /**
+     * Computes the hyperbolic sine of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns sinh(x)
+     */
+    static BigDecimal sinh(BigDecimal x, MathContext mc) {
+        return compute("sinh", x, mc, BigDecimalMath::sinh);
+    }
+
+    /**
+     * Computes the hyperbolic cosine of a value
+     * @param x The value
+     * @return Returns cosh(x)
+     */
+    static BigDecimal cosh(BigDecimal x) {
+        return cosh(x, MC);
+    }
+
+    /**
+     * Computes the hyperbolic cosine of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns cosh(x)
+     */
+    static BigDecimal cosh(BigDecimal x, MathContext mc) {
+        return compute("cosh", x, mc, BigDecimalMath::cosh);
+    }
+
+    /**
+     * Computes the hyperbolic tangent of a value
+     * @param x The value
+     * @return Returns tanh(x)
+     */
+    static BigDecimal tanh(BigDecimal x) {
+        return tanh(x, MC);
+    }
+
+    /**
+     * Computes the hyperbolic tangent of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns tanh(x)
+     */
+    static BigDecimal tanh(BigDecimal x, MathContext mc) {
+        return compute("tanh", x, mc, BigDecimalMath::tanh);
+    }
+
+    /**
+     * Computes the inverse hyperbolic sine of a value
+     * @param x The value
+     * @return Returns asinh(x)
+     */
+    static BigDecimal asinh(BigDecimal x) {
+        return asinh(x, MC);
+    }
+
+    /**
+     * Computes the inverse hyperbolic sine of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns asinh(x)
+     */
+    static BigDecimal asinh(BigDecimal x, MathContext mc) {
+        return compute("asinh", x, mc, BigDecimalMath::asinh);
+    }
+
+    /**
+     * Computes the inverse hyperbolic cosine of a value
+     * @param x The value
+     * @return Returns acosh(x)
+     */
+    static BigDecimal acosh(BigDecimal x) {
+        return acosh(x, MC);
+    }
+
+    /**
+     * Computes the inverse hyperbolic cosine of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns acosh(x)
+     */
+    static BigDecimal acosh(BigDecimal x, MathContext mc) {
+        return compute("acosh", x, mc, BigDecimalMath::acosh);
+    }
+
+    /**
+     * Computes the inverse hyperbolic tangent of a value
+     * @param x The value
+     * @return Returns atanh(x)
+     */
+    static BigDecimal atanh(BigDecimal x) {
+        return atanh(x, MC);
+    }
+
+    /**
+     * Computes the inverse hyperbolic tangent of a value
+     * @param x The value
+     * @param mc Precision of the result
+     * @return Returns atanh(x)
+     */
+    static BigDecimal atanh(BigDecimal x, MathContext mc) {
+        return compute("atanh", x, mc, BigDecimalMath::atanh);
+    }
+}
@@ -0,0 +1,272 @@
+package physics;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import static physics.Program.*;
+
+/**
+ * Evaluates the values of a Program to a reduced precision, either with doubles or with BigDecimals rounded to a
+ * given MathContext.
+ * Alongside each value, a bound on its absolute error is carried forward through every operation. The result is only
+ * accepted if every value within the bound is displayed the same way at the requested number of significant figures,
+ * which fails on cancellation, ill-conditioned functions, or when more digits are requested than the precision holds.
+ */
+class BoundedEvaluator {
+    // Unit roundoff of a double
+    private static final double U = 0x1.0p-53;
+    // Largest relative error for which first order error bounds are trusted
+    private static final double LINEAR = 1e-3;
+    // Most significant figures doubles can be trusted to give
+    static final int MAX_DOUBLE_SIG_FIGS = 15;
+
+    private final MathContext mc;
+    // Unit roundoff of the working precision
+    private final double roundoff;
+    private final double[] values;
+    private final double[] errors;
+    private final BigDecimal[] exact;
+    private double error;
+
+    /**
+     * Creates an evaluator with room for the given number of operands
+     * @param maxStack Greatest number of operands on the stack at once
+     * @param mc Precision to work to, or null to work with doubles
+     */
+    BoundedEvaluator(int maxStack, MathContext mc) {
+        this.mc = mc;
+        roundoff = mc == null ? U : 0.5 * Math.pow(10, 1 - mc.getPrecision());
+        values = new double[maxStack];
+        errors = new double[maxStack];
+        exact = mc == null ? null : new BigDecimal[maxStack];
+    }
+
+    /**
+     * Evaluates a program
+     * @param code Instructions of the program
+     * @param constants Value of each constant referred to by CONST instructions
+     * @param constantDoubles Nearest double to each constant, or NaN where it cannot be represented
+     * @param slots Value of each variable referred to by VAR instructions
+     * @param slotDoubles Nearest double to each variable, or NaN where it cannot be represented
+     * @param sigFigs Number of significant figures the result is displayed with
+     * @return Returns the result, or null if it cannot be given reliably to the requested significant figures
+     */
+    BigDecimal evaluate(int[] code, BigDecimal[] constants, double[] constantDoubles, BigDecimal[] slots,
+                        double[] slotDoubles, int sigFigs) {
+        if (mc == null && sigFigs > MAX_DOUBLE_SIG_FIGS)
+            return null;
+
+        int top = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            int opcode = code[pc];
+
+            if (opcode == CONST || opcode == VAR) {
+                int index = code[++pc];
+                double x = opcode == CONST ? constantDoubles[index] : slotDoubles[index];
+                // Values that did not convert, or that lost relative precision in conversion, cannot be bounded
+                if (x != 0 && !(Math.abs(x) >= Double.MIN_NORMAL && Double.isFinite(x)))
+                    return null;
+
+                values[top] = x;
+                if (mc == null)
+                    errors[top++] = Math.abs(x) * U;
+                else {
+                    exact[top] = opcode == CONST ? constants[index] : slots[index];
+                    errors[top++] = 0;
+                }
+            }
+            else if (opcode == FUNC) {
+                if (!function(code[++pc], top - 1))
+                    return null;
+            }
+            else {
+                top--;
+                if (!operate(opcode, top - 1, top))
+                    return null;
+            }
+        }
+
+        // Inflate the bound slightly to cover rounding in the error arithmetic itself
+        error = errors[0] * (1 + 16 * U);
+        BigDecimal value = mc == null ? new BigDecimal(values[0]) : exact[0];
+
+        return isStable(value, error, sigFigs) ? value : null;
+    }
+
+    /**
+     * Gets the error bound of the last accepted result
+     * @return Returns the bound on the absolute error of the result
+     */
+    double getError() {
+        return error;
+    }
+
+    /**
+     * Checks whether every value within an error bound is displayed the same way
+     * @param value The computed value
+     * @param error Bound on the absolute error of the value
+     * @param sigFigs Number of significant figures the value is displayed with
+     * @return Returns true if the value is displayed correctly at the given significant figures, false otherwise
+     */
+    static boolean isStable(BigDecimal value, double error, int sigFigs) {
+        if (!Double.isFinite(error))
+            return false;
+        if (error == 0)
+            return true;
+
+        BigDecimal bound = new BigDecimal(error);
+        BigDecimal low = value.subtract(bound);
+        BigDecimal high = value.add(bound);
+
+        if (low.signum() != high.signum() || low.signum() == 0)
+            return false;
+
+        return Quantity.valueToString(low, sigFigs).equals(Quantity.valueToString(high, sigFigs));
+    }
+
+    /**
+     * Performs a binary operation on the stack, storing the result in the left operand
+     * @param opcode The operation to perform
+     * @param l Stack index of the left operand
+     * @param r Stack index of the right operand
+     * @return Returns true if the operation was performed, false if its error could not be bounded
+     */
+    private boolean operate(int opcode, int l, int r) {
+        double a = values[l], ea = errors[l];
+        double b = values[r], eb = errors[r];
+
+        if (opcode == DIVIDE && Math.abs(b) <= eb)
+            return false;
+        if (opcode == POW && (Math.abs(a) <= ea || (a < 0 && !(eb == 0 && b == Math.rint(b)))))
+            return false;
+
+        if (mc == null) {
+            values[l] = switch (opcode) {
+                case ADD -> a + b;
+                case SUBTRACT -> a - b;
+                case MULTIPLY -> a * b;
+                case DIVIDE -> a / b;
+                default -> Math.pow(a, b);
+            };
+        }
+        else {
+            exact[l] = switch (opcode) {
+                case ADD -> Arithmetic.add(exact[l], exact[r], mc);
+                case SUBTRACT -> Arithmetic.subtract(exact[l], exact[r], mc);
+                case MULTIPLY -> Arithmetic.multiply(exact[l], exact[r], mc);
+                case DIVIDE -> Arithmetic.divide(exact[l], exact[r], mc);
+                default -> Arithmetic.pow(exact[l], exact[r], mc);
+            };
+            if (!convert(l))
+                return false;
+        }
+
+        double value = Math.abs(values[l]);
+        double error = switch (opcode) {
+            case ADD, SUBTRACT -> ea + eb;
+            case MULTIPLY -> Math.abs(a) * eb + Math.abs(b) * ea + ea * eb;
+            case DIVIDE -> (Math.abs(a) * eb + Math.abs(b) * ea) / (Math.abs(b) * (Math.abs(b) - eb));
+            default -> {
+                double relative = Math.abs(b) * ea / Math.abs(a) + Math.abs(Math.log(Math.abs(a))) * eb;
+                if (relative > LINEAR)
+                    yield Double.NaN;
+
+                // Doubled to cover the second order terms, and pow is accurate to within an extra rounding
+                yield 2 * value * relative + roundoff * value;
+            }
+        };
+
+        errors[l] = error + value * roundoff;
+        return Double.isFinite(values[l]) && Double.isFinite(errors[l]);
+    }
+
+    /**
+     * Applies a function to the operand on top of the stack, storing the result in its place
+     * @param function Index of the function in FUNCTIONS
+     * @param i Stack index of the operand
+     * @return Returns true if the function was applied, false if its error could not be bounded
+     */
+    private boolean function(int function, int i) {
+        String name = FUNCTIONS[function];
+        double a = values[i], ea = errors[i];
+        double abs = Math.abs(a);
+
+        // Reject arguments for which the error cannot be bounded, before computing anything
+        boolean bounded = switch (name) {
+            case "sqrt" -> a >= 0;
+            case "ln", "log" -> a > ea;
+            case "exp" -> ea <= LINEAR;
+            case "asin", "acos", "atanh" -> abs + ea < 1;
+            case "acosh" -> a - ea > 1;
+            default -> true;
+        };
+        if (!bounded)
+            return false;
+
+        if (mc == null) {
+            values[i] = switch (name) {
+                case "sqrt" -> Math.sqrt(a);
+                case "ln" -> Math.log(a);
+                case "log" -> Math.log10(a);
+                case "exp" -> Math.exp(a);
+                case "sin" -> Math.sin(a);
+                case "cos" -> Math.cos(a);
+                case "tan" -> Math.tan(a);
+                case "asin" -> Math.asin(a);
+                case "acos" -> Math.acos(a);
+                case "atan" -> Math.atan(a);
+                case "sinh" -> Math.sinh(a);
+                case "cosh" -> Math.cosh(a);
+                case "tanh" -> Math.tanh(a);
+                case "asinh" -> Math.copySign(Math.log(abs + Math.sqrt(a * a + 1)), a);
+                case "acosh" -> Math.log(a + Math.sqrt(a * a - 1));
+                case "atanh" -> 0.5 * Math.log((1 + a) / (1 - a));
+                default -> Double.NaN;
+            };
+        }
+        else {
+            exact[i] = Program.apply(function, exact[i], mc);
+            if (!convert(i))
+                return false;
+        }
+
+        double value = values[i];
+        double error = switch (name) {
+            case "sqrt" -> ea / (value + Math.sqrt(Math.max(a - ea, 0)));
+            case "ln" -> ea / (a - ea);
+            case "log" -> ea / (a - ea) / Math.log(10);
+            case "exp" -> value * Math.expm1(ea);
+            case "sin", "cos", "atan", "tanh", "asinh" -> ea;
+            // The derivative may grow by its own second order term across the bound
+            case "tan" -> {
+                double bound = 2 * ea * (1 + value * value);
+                yield bound > LINEAR * Math.max(1, Math.abs(value)) ? Double.NaN : bound;
+            }
+            case "asin", "acos" -> ea / Math.sqrt(1 - (abs + ea) * (abs + ea));
+            case "sinh", "cosh" -> ea * Math.cosh(abs + ea);
+            case "acosh" -> ea / Math.sqrt((a - ea) * (a - ea) - 1);
+            case "atanh" -> ea / (1 - (abs + ea) * (abs + ea));
+            default -> Double.NaN;
+        };
+
+        // Library functions are accurate to a couple of ulps. The composite forms used for doubles are only
+        // accurate in absolute terms near zero.
+        errors[i] = error + (mc == null ? 4 * U * (Math.abs(value) + 1) : 2 * roundoff * Math.abs(value));
+        return Double.isFinite(value) && Double.isFinite(errors[i]);
+    }
+
+    /**
+     * Updates the double approximation of an exact value on the stack
+     * @param i Stack index of the value
+     * @return Returns true if the value is well represented by a double, false otherwise
+     */
+    private boolean convert(int i) {
+        double x = exact[i].doubleValue();
+        values[i] = x;
+
+        if (x == 0)
+            return exact[i].signum() == 0;
+        return Math.abs(x) >= Double.MIN_NORMAL && Double.isFinite(x);
+    }
+}
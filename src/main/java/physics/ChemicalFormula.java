@@ -1,15 +1,44 @@
 package physics;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Stack;
+import java.util.*;
 
 /**
  * A class representing a chemical formula
  */
 public class ChemicalFormula {
+    private static final int FORMULA_CACHE_SIZE = 256;
+    // Recently parsed formulas, evicting the least recently used once full
+    private static final LinkedHashMap<String, ChemicalFormula> FORMULAS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ChemicalFormula> eldest) {
+            return size() > FORMULA_CACHE_SIZE;
+        }
+    };
+
     private final FormulaNode root;
+    private final int[] counts;
+    private final Quantity molarMass;
+
+    /**
+     * Gets the Chemical Formula represented by the given string.
+     * Recently used formulas are only parsed once, and then reused.
+     * @param formula String representation of the formula, such as Ca(OH)2
+     * @return Returns the corresponding Chemical Formula
+     */
+    public static ChemicalFormula parse(String formula) {
+        synchronized (FORMULAS) {
+            ChemicalFormula cached = FORMULAS.get(formula);
+            if (cached != null)
+                return cached;
+        }
+
+        // Parsed outside the lock, so that lookups from other threads are not held up by it
+        ChemicalFormula parsed = new ChemicalFormula(Parsing.parseChemicalFormula(formula));
+        synchronized (FORMULAS) {
+            FORMULAS.put(formula, parsed);
+        }
+        return parsed;
+    }
 
     /**
      * Create a Chemical Formula given a list of chemical tokens that represent it.
@@ -52,13 +81,25 @@ public class ChemicalFormula {
             Collections.reverse(output);
             root = new GroupNode(output, count);
         }
+
+        counts = new int[Chemistry.getElementCount() + 1];
+        root.addCounts(counts, 1);
+        molarMass = Chemistry.getMolarMass(counts);
     }
 
     /**
      * Gets the molar mass of this Chemical Formula.
      */
     public Quantity getMolarMass() {
-        return root.getMolarMass();
+        return molarMass;
+    }
+
+    /**
+     * Gets the number of atoms of each element in this Chemical Formula
+     * @return Returns an array of counts, indexed by atomic number
+     */
+    public int[] getElementCounts() {
+        return counts.clone();
     }
 
     public String toString() {
@@ -72,7 +113,12 @@ public class ChemicalFormula {
             this.count = count;
         }
 
-        public abstract Quantity getMolarMass();
+        /**
+         * Adds the number of atoms of each element in this node to the given counts
+         * @param counts Number of atoms of each element, indexed by atomic number
+         * @param multiplier Number of times this node appears in its enclosing groups
+         */
+        public abstract void addCounts(int[] counts, int multiplier);
     }
 
     private class ElementNode extends FormulaNode {
@@ -83,10 +129,12 @@ public class ChemicalFormula {
             this.element = element;
         }
 
-        public Quantity getMolarMass() {
-            Quantity molarMass = new Quantity(String.valueOf(Chemistry.getMolarMass(element)),
-                                              new Dimension(0, 0, 1, 0, 0, -1, 0));
-            return molarMass.multiply(new Quantity(count)).divide(new Quantity(1000));
+        public void addCounts(int[] counts, int multiplier) {
+            int Z = Chemistry.getAtomicNumber(element);
+            if (Z == -1)
+                throw new RuntimeException("Unrecognized element: " + element);
+
+            counts[Z] += count * multiplier;
         }
 
         @Override
@@ -107,14 +155,10 @@ public class ChemicalFormula {
             this.components = components;
         }
 
-        public Quantity getMolarMass() {
-            Quantity result = new Quantity(0, new Dimension(0, 0, 1, 0, 0, -1, 0));
-
+        public void addCounts(int[] counts, int multiplier) {
             for (FormulaNode component : components) {
-                result = result.add(component.getMolarMass());
+                component.addCounts(counts, count * multiplier);
             }
-
-            return result.multiply(new Quantity(count));
         }
 
         @Override
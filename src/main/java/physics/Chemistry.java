@@ -1,6 +1,8 @@
 package physics;
 
 import java.io.File;
+import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.Map;
 
 import tools.jackson.core.type.TypeReference;
@@ -10,8 +12,13 @@ import tools.jackson.databind.ObjectMapper;
  * Encapsulates some relevant information for chemistry-related functions.
  */
 public class Chemistry {
+    private static final Dimension MOLAR_MASS = Dimension.of(0, 0, 1, 0, 0, -1, 0);
+
     private static final Map<String, Double> molarMasses;
     private static final String[] elementStrings;
+    private static final Map<String, Integer> atomicNumbers;
+    // Molar mass of each element in kg/mol, indexed by atomic number
+    private static final BigDecimal[] molarMassTable;
 
     /**
      * Gets the molar mass of a given element in g/mol.
@@ -23,6 +30,39 @@ public class Chemistry {
         return molarMasses.get(element);
     }
 
+    /**
+     * Gets the molar mass of a compound from the number of atoms of each element in it
+     * @param counts Number of atoms of each element, indexed by atomic number
+     * @return Returns the molar mass of the compound
+     */
+    public static Quantity getMolarMass(int[] counts) {
+        BigDecimal sum = BigDecimal.ZERO;
+
+        for (int Z = 1; Z < counts.length; Z++) {
+            if (counts[Z] != 0)
+                sum = sum.add(molarMassTable[Z].multiply(BigDecimal.valueOf(counts[Z])));
+        }
+
+        return Quantity.valueOf(sum, MOLAR_MASS);
+    }
+
+    /**
+     * Gets the atomic number of the element with the given symbol. Case-sensitive.
+     * @param element Symbol of the element
+     * @return Returns the atomic number of the element, or -1 if there is no such element
+     */
+    public static int getAtomicNumber(String element) {
+        return atomicNumbers.getOrDefault(element, -1);
+    }
+
+    /**
+     * Gets the number of known elements
+     * @return Returns the largest atomic number
+     */
+    public static int getElementCount() {
+        return elementStrings.length;
+    }
+
     /**
      * Gets the symbols of each element
      * @return Returns an array of symbols, so that the symbol for atomic number Z is found at index Z-1
@@ -36,5 +76,12 @@ public class Chemistry {
         File file = new File("src/main/resources/data/periodic_table.json");
         molarMasses = mapper.readValue(file, new TypeReference<>() {});
         elementStrings = molarMasses.keySet().toArray(new String[0]);
+
+        atomicNumbers = new HashMap<>();
+        molarMassTable = new BigDecimal[elementStrings.length + 1];
+        for (int i = 0; i < elementStrings.length; i++) {
+            atomicNumbers.put(elementStrings[i], i + 1);
+            molarMassTable[i + 1] = new BigDecimal(String.valueOf(molarMasses.get(elementStrings[i]))).movePointLeft(3);
+        }
     }
-}
\ No newline at end of file
+}
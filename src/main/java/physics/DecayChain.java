@@ -0,0 +1,474 @@
+package physics;
+
+import physics.exceptions.IncompatibleUnitsException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * The network of nuclides reached by the decay of a parent nuclide, and the number of each present over time.
+ * Populations are given per atom of the parent present at time 0, and solve dN/dt = AN, where A is the decay matrix
+ * of the chain. Members are ordered so that every decay goes to a later member, which makes A lower triangular.
+ * <p>
+ * Rather than the Bateman sums, which cancel badly when two members have similar half-lives, exp(At) is applied with
+ * the Chebyshev rational approximation of order 16 used in nuclear burnup codes. It needs one forward substitution
+ * through A per pole, and stays accurate to about 1e-14 of the initial population however far apart the half-lives
+ * of the members are.
+ * <p>
+ * Branching is taken from the decay modes of each nuclide. Beta-delayed particle emission, such as B-N, is given in
+ * the data as a share of the beta decays, so it is taken out of the beta branch. Fission, and any branch to a nuclide
+ * missing from the data, leaves the chain.
+ */
+public class DecayChain {
+    private static final Dimension TIME = Dimension.of("s");
+    private static final Dimension ACTIVITY = Dimension.of("Hz");
+    private static final ConcurrentHashMap<Integer, DecayChain> CHAINS = new ConcurrentHashMap<>();
+
+    // Change in Z and A for each decay mode with a single daughter
+    private static final Map<String, int[]> MODES = new HashMap<>();
+    // Modes of which the beta-delayed modes are a share
+    private static final String[] BETA_MINUS = {"B-"};
+    private static final String[] BETA_PLUS = {"EC+B+", "B++EC", "EC", "B+"};
+
+    // Residues and poles of the order 16 Chebyshev rational approximation to exp(-x) on the positive real axis
+    private static final double ALPHA_0 = 2.1248537104952237488e-16;
+    private static final double[] ALPHA_RE = {-5.0901521865224915650e-7, 2.1151742182466030907e-4,
+            1.1339775178483930527e2, 1.5059585270023467528e1, -6.4500878025539646595e1, -1.4793007113557999718e0,
+            -6.2518392463207918892e1, 4.1023136835410021273e-2};
+    private static final double[] ALPHA_IM = {-2.4220017652852287970e-5, 4.3892969647380673918e-3,
+            1.0194721704215856450e2, -5.7514052776421819979e0, -2.2459440762652096056e2, 1.7686588323782937906e0,
+            -1.1190391094283228480e1, -1.5743466173455468191e-1};
+    private static final double[] THETA_RE = {-1.0843917078696988026e1, -5.2649713434426468895e0,
+            5.9481522689511774808e0, 3.5091036084149180974e0, 6.4161776990994341923e0, 1.4193758971856659786e0,
+            4.9931747377179963991e0, -1.4139284624888862114e0};
+    private static final double[] THETA_IM = {1.9277446167181652284e1, 1.6220221473167927305e1,
+            3.5874573620183222829e0, 8.4361989858843750826e0, 1.1941223933701386874e0, 1.0925363484496722585e1,
+            5.9968817136039422260e0, 1.3497725698892745389e1};
+
+    // Members of the chain, parent first
+    private final int[] protons;
+    private final int[] massNumbers;
+    private final String[] names;
+    private final double[] decayConstants;
+    // Members that decay into each member, and the rate at which they do so per atom
+    private final int[][] parents;
+    private final double[][] rates;
+
+    static {
+        MODES.put("B-", new int[]{1, 0});
+        MODES.put("2B-", new int[]{2, 0});
+        MODES.put("B-P", new int[]{0, -1});
+        MODES.put("B-A", new int[]{-1, -4});
+        for (int n = 1; n <= 7; n++)
+            MODES.put(n == 1 ? "B-N" : "B-" + n + "N", new int[]{1, -n});
+
+        for (String mode : BETA_PLUS)
+            MODES.put(mode, new int[]{-1, 0});
+        MODES.put("2EC", new int[]{-2, 0});
+        MODES.put("2B+", new int[]{-2, 0});
+        MODES.put("ECP", new int[]{-2, -1});
+        MODES.put("B+P", new int[]{-2, -1});
+        MODES.put("EC2P", new int[]{-3, -2});
+        MODES.put("B+2P", new int[]{-3, -2});
+        MODES.put("ECA", new int[]{-3, -4});
+        MODES.put("B+A", new int[]{-3, -4});
+
+        MODES.put("A", new int[]{-2, -4});
+        MODES.put("P", new int[]{-1, -1});
+        MODES.put("2P", new int[]{-2, -2});
+        MODES.put("N", new int[]{0, -1});
+        MODES.put("2N", new int[]{0, -2});
+    }
+
+    /**
+     * Creates the decay chain of a nuclide
+     * @param table The nuclide data
+     * @param parent Row of the parent nuclide
+     * @throws RuntimeException If the decays of the chain form a cycle
+     */
+    private DecayChain(NuclideTable table, int parent) {
+        // Visit every reachable nuclide, then reverse the order in which they finished so that decays point forwards
+        List<Integer> order = new ArrayList<>();
+        Map<Integer, double[]> branches = new HashMap<>();
+        visit(table, parent, new HashMap<>(), order, branches);
+
+        int size = order.size();
+        Map<Integer, Integer> indices = new HashMap<>();
+        for (int i = 0; i < size; i++)
+            indices.put(order.get(size - 1 - i), i);
+
+        protons = new int[size];
+        massNumbers = new int[size];
+        names = new String[size];
+        decayConstants = new double[size];
+        List<List<Integer>> parentLists = new ArrayList<>();
+        List<List<Double>> rateLists = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            int row = order.get(size - 1 - i);
+            protons[i] = table.getZ(row);
+            massNumbers[i] = table.getZ(row) + table.getN(row);
+            names[i] = massNumbers[i] + table.getSymbol(row);
+            decayConstants[i] = decayConstant(table, row);
+            parentLists.add(new ArrayList<>());
+            rateLists.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < size; i++) {
+            double[] branch = branches.get(order.get(size - 1 - i));
+            for (int j = 0; j < branch.length; j += 2) {
+                int daughter = indices.get((int) branch[j]);
+                parentLists.get(daughter).add(i);
+                rateLists.get(daughter).add(branch[j + 1] * decayConstants[i]);
+            }
+        }
+
+        parents = new int[size][];
+        rates = new double[size][];
+        for (int i = 0; i < size; i++) {
+            parents[i] = parentLists.get(i).stream().mapToInt(Integer::intValue).toArray();
+            rates[i] = rateLists.get(i).stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+
+    /**
+     * Gets the decay chain of a nuclide. Chains are built once and shared
+     * @param Z Number of protons in the parent
+     * @param A Mass number of the parent
+     * @return Returns the decay chain starting from the given nuclide
+     */
+    public static DecayChain of(int Z, int A) {
+        NuclideTable table = Nuclides.getTable();
+        int row = table.getRow(Z, A - Z);
+
+        if (row == -1)
+            throw new RuntimeException("Missing data on nuclide Z=" + Z + ", A=" + A);
+
+        return CHAINS.computeIfAbsent(row, r -> new DecayChain(table, r));
+    }
+
+    /**
+     * Gets the decay chain of a nuclide. Chains are built once and shared
+     * @param nuclide String representation of the parent, as accepted by Nuclides.parseNuclide
+     * @return Returns the decay chain starting from the given nuclide
+     */
+    public static DecayChain of(String nuclide) {
+        int[] parent = Nuclides.parseNuclide(nuclide);
+        return of(parent[0], parent[1]);
+    }
+
+    /**
+     * Gets the number of nuclides in the chain
+     * @return Returns the number of members, including the parent
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Gets the members of the chain
+     * @return Returns the name of each member, such as 234Th, with the parent first and every decay going to a later
+     * member
+     */
+    public String[] getMembers() {
+        return names.clone();
+    }
+
+    /**
+     * Finds a nuclide in the chain
+     * @param Z Number of protons in nuclide
+     * @param A Mass number of nuclide
+     * @return Returns the index of the nuclide among the members, or -1 if it is not reached by the chain
+     */
+    public int indexOf(int Z, int A) {
+        for (int i = 0; i < names.length; i++) {
+            if (protons[i] == Z && massNumbers[i] == A)
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Computes the number of atoms of each member at a given time
+     * @param t Time since the start, in seconds
+     * @return Returns the population of each member per initial atom of the parent, in the order of getMembers
+     */
+    public double[] getPopulations(double t) {
+        if (!(t >= 0))
+            throw new RuntimeException("Time must be non-negative: " + t);
+
+        int size = names.length;
+        double[] populations = new double[size];
+        if (t == 0) {
+            populations[0] = 1;
+            return populations;
+        }
+
+        // exp(At) n0 = alpha_0 n0 + 2 Re sum alpha_k (At - theta_k)^-1 n0, where n0 is the parent alone
+        double[] re = new double[size];
+        double[] im = new double[size];
+        populations[0] = ALPHA_0;
+
+        for (int k = 0; k < THETA_RE.length; k++) {
+            for (int i = 0; i < size; i++) {
+                double sumRe = i == 0 ? 1 : 0;
+                double sumIm = 0;
+                for (int j = 0; j < parents[i].length; j++) {
+                    double rate = rates[i][j] * t;
+                    sumRe -= rate * re[parents[i][j]];
+                    sumIm -= rate * im[parents[i][j]];
+                }
+
+                // Divide by the diagonal, -lambda t - theta, scaling by its larger part so that it cannot overflow
+                double dRe = -decayConstants[i] * t - THETA_RE[k];
+                double dIm = -THETA_IM[k];
+                if (Math.abs(dRe) >= Math.abs(dIm)) {
+                    double ratio = dIm / dRe;
+                    double denominator = dRe + dIm * ratio;
+                    re[i] = (sumRe + sumIm * ratio) / denominator;
+                    im[i] = (sumIm - sumRe * ratio) / denominator;
+                }
+                else {
+                    double ratio = dRe / dIm;
+                    double denominator = dIm + dRe * ratio;
+                    re[i] = (sumRe * ratio + sumIm) / denominator;
+                    im[i] = (sumIm * ratio - sumRe) / denominator;
+                }
+            }
+
+            for (int i = 0; i < size; i++)
+                populations[i] += 2 * (ALPHA_RE[k] * re[i] - ALPHA_IM[k] * im[i]);
+        }
+
+        // Values below the accuracy of the approximation may come out slightly negative
+        for (int i = 0; i < size; i++)
+            populations[i] = Math.max(populations[i], 0);
+
+        return populations;
+    }
+
+    /**
+     * Computes the activity of each member at a given time
+     * @param t Time since the start, in seconds
+     * @return Returns the activity of each member in Bq per initial atom of the parent, in the order of getMembers
+     */
+    public double[] getActivities(double t) {
+        double[] activities = getPopulations(t);
+
+        for (int i = 0; i < activities.length; i++)
+            activities[i] *= decayConstants[i];
+
+        return activities;
+    }
+
+    /**
+     * Computes the number of atoms of each member at each of many times, in parallel
+     * @param times Times since the start, in seconds
+     * @return Returns the populations at each time, as given by getPopulations
+     */
+    public double[][] getPopulations(double[] times) {
+        double[][] populations = new double[times.length][];
+        IntStream.range(0, times.length).parallel().forEach(i -> populations[i] = getPopulations(times[i]));
+        return populations;
+    }
+
+    /**
+     * Computes the activity of each member at each of many times, in parallel
+     * @param times Times since the start, in seconds
+     * @return Returns the activities at each time, as given by getActivities
+     */
+    public double[][] getActivities(double[] times) {
+        double[][] activities = new double[times.length][];
+        IntStream.range(0, times.length).parallel().forEach(i -> activities[i] = getActivities(times[i]));
+        return activities;
+    }
+
+    /**
+     * Computes the number of atoms of a member at a given time
+     * @param Z Number of protons in the member
+     * @param A Mass number of the member
+     * @param time Time since the start
+     * @return Returns the population of the member per initial atom of the parent, or 0 if it is not in the chain
+     * @throws IncompatibleUnitsException If the time is not a time
+     */
+    public Quantity getPopulation(int Z, int A, Quantity time) {
+        int i = indexOf(Z, A);
+        if (i == -1)
+            return Quantity.ZERO;
+
+        return Quantity.valueOf(BigDecimal.valueOf(getPopulations(seconds(time))[i]), Dimension.DIMENSIONLESS);
+    }
+
+    /**
+     * Computes the activity of a member at a given time
+     * @param Z Number of protons in the member
+     * @param A Mass number of the member
+     * @param time Time since the start
+     * @return Returns the activity of the member per initial atom of the parent, or 0 if it is not in the chain
+     * @throws IncompatibleUnitsException If the time is not a time
+     */
+    public Quantity getActivity(int Z, int A, Quantity time) {
+        int i = indexOf(Z, A);
+        if (i == -1)
+            return Quantity.valueOf(0, ACTIVITY);
+
+        return Quantity.valueOf(BigDecimal.valueOf(getActivities(seconds(time))[i]), ACTIVITY);
+    }
+
+    /**
+     * Converts a time to seconds
+     * @param time The time
+     * @return Returns the time in seconds
+     * @throws IncompatibleUnitsException If the time is not a time
+     */
+    private static double seconds(Quantity time) {
+        if (time.getDimension() != TIME)
+            throw new IncompatibleUnitsException(TIME.toString(), time.getDimension().toString());
+
+        return time.scaledValue().doubleValue();
+    }
+
+    /**
+     * Visits a nuclide and everything it decays into, depth first
+     * @param table The nuclide data
+     * @param row Row of the nuclide
+     * @param visiting Rows already reached, mapped to true while their daughters are still being visited
+     * @param order Rows in the order that their daughters were finished
+     * @param branches Daughter rows and fractions of each row reached, stored in pairs
+     * @throws RuntimeException If the decays form a cycle
+     */
+    private static void visit(NuclideTable table, int row, Map<Integer, Boolean> visiting, List<Integer> order,
+                              Map<Integer, double[]> branches) {
+        Boolean active = visiting.putIfAbsent(row, true);
+        if (active != null) {
+            if (active)
+                throw new RuntimeException("Decay chain of " + table.getSymbol(row) + " contains a cycle");
+            return;
+        }
+
+        double[] branch = branches(table, row);
+        branches.put(row, branch);
+        for (int i = 0; i < branch.length; i += 2)
+            visit(table, (int) branch[i], visiting, order, branches);
+
+        visiting.put(row, false);
+        order.add(row);
+    }
+
+    /**
+     * Finds the daughters of a nuclide, and the fraction of its decays that go to each
+     * @param table The nuclide data
+     * @param row Row of the nuclide
+     * @return Returns the row of each daughter followed by its fraction, for each daughter in the data
+     */
+    private static double[] branches(NuclideTable table, int row) {
+        if (decayConstant(table, row) == 0)
+            return new double[0];
+
+        String[] modes = table.getDecayModes(row);
+        double[] fractions = new double[modes.length];
+        for (int i = 0; i < modes.length; i++) {
+            double percentage = table.getDecayPercentage(row, i);
+            if (Double.isNaN(percentage))
+                fractions[i] = modes.length == 1 ? 1 : 0;
+            else
+                fractions[i] = percentage / 100;
+        }
+
+        // Beta-delayed emission is a share of the beta decays it follows
+        for (int i = 0; i < modes.length; i++) {
+            String[] primary = null;
+            if (modes[i].startsWith("B-") && !modes[i].equals("B-"))
+                primary = BETA_MINUS;
+            else if ((modes[i].startsWith("EC") || modes[i].startsWith("B+")) && !List.of(BETA_PLUS).contains(modes[i]))
+                primary = BETA_PLUS;
+
+            int j = primary == null ? -1 : indexOf(modes, primary);
+            if (j != -1)
+                fractions[j] = Math.max(fractions[j] - fractions[i], 0);
+        }
+
+        double total = 0;
+        for (double fraction : fractions)
+            total += fraction;
+
+        int Z = table.getZ(row);
+        int A = Z + table.getN(row);
+        List<Double> branches = new ArrayList<>();
+        for (int i = 0; i < modes.length; i++) {
+            int[] change = change(modes[i]);
+            int daughter = change == null ? -1 : table.getRow(Z + change[0], A + change[1] - Z - change[0]);
+            if (daughter == -1 || fractions[i] == 0)
+                continue;
+
+            branches.add((double) daughter);
+            branches.add(total > 1 ? fractions[i] / total : fractions[i]);
+        }
+
+        return branches.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * Finds the daughter of a decay mode
+     * @param mode The decay mode, such as "B-" or "14C" for the emission of a carbon-14 nucleus
+     * @return Returns the change in Z and A, or null if the mode does not have a single daughter
+     */
+    private static int[] change(String mode) {
+        int[] change = MODES.get(mode);
+        if (change != null)
+            return change;
+
+        // Emission of a nucleus, written as 14C, 24NE, or {+24}Ne
+        String cluster = mode.replace("{+", "").replace("}", "");
+        int digits = 0;
+        while (digits < cluster.length() && Character.isDigit(cluster.charAt(digits)))
+            digits++;
+        if (digits == 0 || digits == cluster.length())
+            return null;
+
+        String symbol = cluster.charAt(digits) + cluster.substring(digits + 1).toLowerCase();
+        int Z = Chemistry.getAtomicNumber(symbol);
+        if (Z == -1)
+            return null;
+
+        return new int[]{-Z, -Integer.parseInt(cluster.substring(0, digits))};
+    }
+
+    /**
+     * Gets the decay constant of a nuclide
+     * @param table The nuclide data
+     * @param row Row of the nuclide
+     * @return Returns ln(2) divided by the half-life in seconds, or 0 if it is stable or has no known half-life
+     */
+    private static double decayConstant(NuclideTable table, int row) {
+        double halfLife = table.getValue(row, NuclideTable.HALF_LIFE);
+
+        if (Double.isNaN(halfLife) || halfLife <= 0 || table.getDecayModes(row).length == 0)
+            return 0;
+
+        return Math.log(2) / halfLife;
+    }
+
+    /**
+     * Finds the first of some decay modes that a nuclide has
+     * @param modes Decay modes of the nuclide
+     * @param targets Decay modes to be found
+     * @return Returns the index in modes of the first target found, or -1 if there is none
+     */
+    private static int indexOf(String[] modes, String[] targets) {
+        for (String target : targets) {
+            for (int i = 0; i < modes.length; i++) {
+                if (modes[i].equals(target))
+                    return i;
+            }
+        }
+
+        return -1;
+    }
+}
@@ -1,31 +1,46 @@
 package physics;
 
-import org.jscience.mathematics.number.Rational;
+import physics.exceptions.InvalidDimensionException;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Represents the dimensions of a quantity in terms of the SI fundamental units
+ * Represents the dimensions of a quantity in terms of the SI fundamental units.
+ * The seven rational exponents are packed into a single long, as signed 8-bit numerators over a shared 8-bit
+ * denominator. Dimensions are interned, so that equal dimensions are always the same object.
  */
 public class Dimension {
     private static final HashMap<String, Dimension> baseUnits1;
     private static final HashMap<Dimension, String> baseUnits2;
 
-    private static final Dimension DIMENSIONLESS = new Dimension(0, 0, 0, 0, 0, 0,0);
+    // Layout of the packed exponents: numerator i in bits 8i to 8i + 7, and the denominator in the top byte
+    private static final int COUNT = 7;
+    private static final int DENOMINATOR_SHIFT = 56;
+    private static final long NUMERATORS = 0x00FF_FFFF_FFFF_FFFFL;
+    private static final long SIGN_BITS = 0x0080_8080_8080_8080L;
+    private static final long ONE = 1L << DENOMINATOR_SHIFT;
+    // Largest unreduced numerator or denominator that could still be packed
+    private static final int LIMIT = 255 * 255;
 
-    private Rational[] dimensions = new Rational[7];
+    // Every Dimension created so far, and a direct-mapped cache in front of it that needs no boxing
+    private static final ConcurrentHashMap<Long, Dimension> INTERNED = new ConcurrentHashMap<>();
+    private static final Dimension[] CACHE = new Dimension[1024];
+
+    public static final Dimension DIMENSIONLESS = of(0, 0, 0, 0, 0, 0, 0);
+
+    private final long bits;
 
     /**
-     * Creates a dimensionless Dimension
+     * Creates a Dimension from its packed exponents
+     * @param bits Exponents packed as described above, already reduced
      */
-    public Dimension() {
-        for (int i = 0; i < 7; i++) {
-            dimensions[i] = Rational.ZERO;
-        }
+    private Dimension(long bits) {
+        this.bits = bits;
     }
 
     /**
-     * Creates a Dimension with the specified value in each SI base quantity.
+     * Gets the Dimension with the specified value in each SI base quantity.
      * Each dimension is treated as having a value equal to the appropriate SI fundamental unit
      * @param T Time
      * @param L Length
@@ -34,64 +49,128 @@ public class Dimension {
      * @param theta Thermodynamic temperature
      * @param N Amount of substance
      * @param J Luminous intensity
+     * @return Returns the Dimension with the given exponents
      */
-    public Dimension(int T, int L, int M, int I, int theta, int N, int J) {
-        dimensions[0] = Rational.valueOf(T,1);
-        dimensions[1] = Rational.valueOf(L,1);
-        dimensions[2] = Rational.valueOf(M,1);
-        dimensions[3] = Rational.valueOf(I,1);
-        dimensions[4] = Rational.valueOf(theta,1);
-        dimensions[5] = Rational.valueOf(N,1);
-        dimensions[6] = Rational.valueOf(J,1);
+    public static Dimension of(int T, int L, int M, int I, int theta, int N, int J) {
+        return of(new int[]{T, L, M, I, theta, N, J});
     }
 
     /**
-     * Creates a Dimension with its value in each SI quantity given by the array.
+     * Gets the Dimension with its value in each SI quantity given by the array.
+     * @param dims Array representing the dimensions in the following order:
+     *             time, length, mass, current, temperature, amount, intensity
+     * @return Returns the Dimension with the given exponents
      */
-    public Dimension(int[] dims) {
-        this(dims[0], dims[1], dims[2], dims[3], dims[4], dims[5], dims[6]);
-
-        if (dims.length != 7)
+    public static Dimension of(int[] dims) {
+        if (dims.length != COUNT)
             throw new RuntimeException("Cannot create Dimension with anything but 7 integers.");
-    }
 
-    /**
-     * Creates a Dimension with the specified values in each SI base quantity
-     * @param dimensions Array representing the dimensions in the following order:
-     *                   time, length, mass, current, temperature, amount, intensity
-     */
-    private Dimension(Rational[] dimensions) {
-        this.dimensions = dimensions;
+        return of(pack(dims, 1));
     }
 
     /**
-     * Creates a Dimension with the same dimensions as the given SI unit
+     * Gets the Dimension of the given SI unit
      * @param dimension Symbol of the SI unit (e.g., Hz for Hertz, W for Watt). Case-sensitive, official SI units only
+     * @return Returns the Dimension of the unit
      */
-    public Dimension(String dimension) {
+    public static Dimension of(String dimension) {
         Dimension dim = baseUnits1.get(dimension);
         if (dim == null)
             throw new RuntimeException("Unrecognized dimension: \"" + dimension + "\"");
 
-        setDimensions(dim.getDimensions());
+        return dim;
+    }
+
+    /**
+     * Gets the interned Dimension with the given packed exponents
+     * @param bits Reduced packed exponents
+     * @return Returns the only Dimension with those exponents
+     */
+    private static Dimension of(long bits) {
+        int index = (int) ((bits ^ (bits >>> 29)) * 0x9E3779B97F4A7C15L >>> 54);
+        Dimension cached = CACHE[index];
+        if (cached != null && cached.bits == bits)
+            return cached;
+
+        Dimension dimension = INTERNED.computeIfAbsent(bits, Dimension::new);
+        CACHE[index] = dimension;
+        return dimension;
+    }
+
+    /**
+     * Packs numerators over a shared denominator, reducing the fraction first
+     * @param numerators Numerator of each exponent
+     * @param denominator Shared denominator of the exponents
+     * @return Returns the packed exponents
+     * @throws InvalidDimensionException If a reduced numerator or the denominator does not fit in 8 bits
+     */
+    private static long pack(int[] numerators, int denominator) {
+        if (denominator < 0) {
+            denominator = -denominator;
+            for (int i = 0; i < COUNT; i++)
+                numerators[i] = -numerators[i];
+        }
+
+        int gcd = denominator;
+        for (int i = 0; i < COUNT; i++)
+            gcd = gcd(gcd, numerators[i]);
+
+        if (gcd == 0)
+            throw new InvalidDimensionException();
+
+        long bits = (long) (denominator / gcd) << DENOMINATOR_SHIFT;
+        if (denominator / gcd > 0xFF)
+            throw new InvalidDimensionException();
+
+        for (int i = 0; i < COUNT; i++) {
+            int numerator = numerators[i] / gcd;
+            if (numerator < Byte.MIN_VALUE || numerator > Byte.MAX_VALUE)
+                throw new InvalidDimensionException();
+
+            bits |= (numerator & 0xFFL) << (8 * i);
+        }
+
+        return bits;
     }
 
     /**
-     * Overwrites the dimensions of this Dimension with the given dimensions
-     * @param dimensions Array representing the dimensions in the following order:
-     *                   time, length, mass, current, temperature, amount, intensity
+     * Unpacks the numerators of this Dimension
+     * @return Returns the numerator of each exponent, over the shared denominator
      */
-    private void setDimensions(Rational[] dimensions) {
-        this.dimensions = dimensions;
+    private int[] numerators() {
+        int[] numerators = new int[COUNT];
+
+        for (int i = 0; i < COUNT; i++)
+            numerators[i] = (byte) (bits >>> (8 * i));
+
+        return numerators;
     }
 
     /**
-     * Returns the dimensions of this Dimension
-     * @return Returns an array with the dimensions in the following order:
-     *         time, length, mass, current, temperature, amount, intensity
+     * Gets the shared denominator of the exponents
+     * @return Returns the denominator, which is at least 1
      */
-    private Rational[] getDimensions() {
-        return dimensions.clone();
+    private int denominator() {
+        return (int) (bits >>> DENOMINATOR_SHIFT);
+    }
+
+    /**
+     * Finds the greatest common divisor of two integers
+     * @param a The first integer
+     * @param b The second integer
+     * @return Returns the non-negative greatest common divisor
+     */
+    private static int gcd(int a, int b) {
+        a = Math.abs(a);
+        b = Math.abs(b);
+
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+
+        return a;
     }
 
     /**
@@ -100,80 +179,92 @@ public class Dimension {
      * @return Returns true if they have the same value for each dimension, false otherwise
      */
     public boolean equals(Dimension units) {
-        for (int i = 0; i < dimensions.length; i++) {
-            if (!dimensions[i].equals(units.dimensions[i]))
-                return false;
-        }
-
-        return true;
+        return this == units;
     }
 
     /**
-     * Returns a new Dimension whose dimensions are the inverse of this object
-     * @return Returns a new Dimension where each dimension is the negative of the respective dimension in this object
+     * Returns a Dimension whose dimensions are the inverse of this object
+     * @return Returns a Dimension where each dimension is the negative of the respective dimension in this object
      */
     public Dimension invert() {
-        Rational[] ret = dimensions.clone();
-
-        for (int i = 0; i < dimensions.length; i++) {
-            ret[i] = ret[i].opposite();
-        }
-
-        return new Dimension(ret);
+        return multiply(-1);
     }
 
     /**
-     * Returns a new Dimension whose dimensions are the sum of two Dimensions
+     * Returns a Dimension whose dimensions are the sum of two Dimensions
      * @param units The Dimension to be added to this Dimension
-     * @return Returns a new Dimension whose dimensions are the sum of this Dimension and the argument
+     * @return Returns a Dimension whose dimensions are the sum of this Dimension and the argument
      */
     public Dimension add(Dimension units) {
-        Rational[] ret = dimensions.clone();
+        // Common case of equal denominators: add all seven numerators at once, lane by lane
+        if ((bits ^ units.bits) >>> DENOMINATOR_SHIFT == 0 && bits >>> DENOMINATOR_SHIFT == 1) {
+            long a = bits & NUMERATORS;
+            long b = units.bits & NUMERATORS;
+            long sum = ((a & ~SIGN_BITS) + (b & ~SIGN_BITS)) ^ ((a ^ b) & SIGN_BITS);
+
+            // Signed overflow in a lane happens when both operands share a sign that the sum does not
+            if (((a ^ sum) & (b ^ sum) & SIGN_BITS) != 0)
+                throw new InvalidDimensionException();
 
-        for (int i = 0; i < dimensions.length; i++) {
-            ret[i] = ret[i].plus(units.dimensions[i]);
+            return of(ONE | sum);
         }
 
-        return new Dimension(ret);
+        int[] a = numerators();
+        int[] b = units.numerators();
+        int da = denominator();
+        int db = units.denominator();
+
+        for (int i = 0; i < COUNT; i++)
+            a[i] = a[i] * db + b[i] * da;
+
+        return of(pack(a, da * db));
     }
 
     /**
-     * Returns a new Dimension whose dimensions are the difference of two Dimensions
+     * Returns a Dimension whose dimensions are the difference of two Dimensions
      * @param units The Dimension to be subtracted from this Dimension
-     * @return Returns a new Dimension whose dimensions are those of this Dimension minus those of the argument
+     * @return Returns a Dimension whose dimensions are those of this Dimension minus those of the argument
      */
     public Dimension subtract(Dimension units) {
         return add(units.invert());
     }
 
     /**
-     * Returns a new Dimension where each dimension has been multiplied by a constant
+     * Returns a Dimension where each dimension has been multiplied by a constant
      * @param n The constant to multiply all dimensions by
-     * @return Returns a new Dimension whose dimensions are the product of this Dimension and the argument
+     * @return Returns a Dimension whose dimensions are the product of this Dimension and the argument
      */
     public Dimension multiply(int n) {
-        Rational[] ret = dimensions.clone();
+        if (n == 1 || this == DIMENSIONLESS)
+            return this;
+
+        int[] numerators = numerators();
+        for (int i = 0; i < COUNT; i++) {
+            // Past this, no common factor with the denominator could bring the numerator back within a byte
+            if (Math.abs((long) numerators[i] * n) > LIMIT)
+                throw new InvalidDimensionException();
 
-        for (int i = 0; i < dimensions.length; i++) {
-            ret[i] = ret[i].times(n);
+            numerators[i] *= n;
         }
 
-        return new Dimension(ret);
+        return of(pack(numerators, denominator()));
     }
 
     /**
-     * Returns a new Dimension where each dimension has been divided by a constant
+     * Returns a Dimension where each dimension has been divided by a constant
      * @param n The constant to divide all dimensions by
-     * @return Returns a new Dimension whose dimensions are the quotient of this Dimension and the argument
+     * @return Returns a Dimension whose dimensions are the quotient of this Dimension and the argument
      */
     public Dimension divide(int n) {
-        Rational[] ret = dimensions.clone();
+        if (n == 0)
+            throw new ArithmeticException("Cannot divide a Dimension by zero.");
+        if (n == 1 || this == DIMENSIONLESS)
+            return this;
 
-        for (int i = 0; i < dimensions.length; i++) {
-            ret[i] = ret[i].divide(Rational.valueOf(n,1));
-        }
+        if (Math.abs((long) denominator() * n) > LIMIT)
+            throw new InvalidDimensionException();
 
-        return new Dimension(ret);
+        return of(pack(numerators(), denominator() * n));
     }
 
     /**
@@ -181,20 +272,17 @@ public class Dimension {
      * @return Returns true if all dimensions are 0, false otherwise
      */
     public boolean isDimensionless() {
-        return this.equals(DIMENSIONLESS);
+        return this == DIMENSIONLESS;
     }
 
     @Override
     public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Dimension dimension = (Dimension) o;
-        return Objects.deepEquals(dimensions, dimension.dimensions);
+        return this == o;
     }
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(dimensions);
+        return Long.hashCode(bits);
     }
 
     /**
@@ -226,9 +314,12 @@ public class Dimension {
         if (str != null)
             return str;
 
+        int[] numerators = numerators();
+        int denominator = denominator();
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < dimensions.length; i++) {
-            if (!dimensions[i].equals(Rational.ZERO)) {
+
+        for (int i = 0; i < COUNT; i++) {
+            if (numerators[i] != 0) {
                 sb.append(switch (i) {
                     case 0 -> "s";
                     case 1 -> "m";
@@ -240,9 +331,11 @@ public class Dimension {
                     default -> "";
                 });
 
+                int gcd = gcd(numerators[i], denominator);
                 sb.append("^");
                 if (isLatex) sb.append("{");
-                sb.append(dimensions[i].getDivisor().equals(1) ? dimensions[i].getDividend() : dimensions[i]);
+                sb.append(numerators[i] / gcd);
+                if (denominator != gcd) sb.append("/").append(denominator / gcd);
                 if (isLatex) sb.append("}");
             }
         }
@@ -256,32 +349,32 @@ public class Dimension {
 
     static {
         baseUnits1 = new HashMap<>();
-        baseUnits1.put("s",   new Dimension(1, 0, 0, 0, 0, 0, 0));   // Second
-        baseUnits1.put("m",   new Dimension(0, 1, 0, 0, 0, 0, 0));   // Metre
-        baseUnits1.put("kg",  new Dimension(0, 0, 1, 0, 0, 0, 0));   // Kilogram
-        baseUnits1.put("A",   new Dimension(0, 0, 0, 1, 0, 0, 0));   // Ampere
-        baseUnits1.put("K",   new Dimension(0, 0, 0, 0, 1, 0, 0));   // Kelvin
-        baseUnits1.put("mol", new Dimension(0, 0, 0, 0, 0, 1, 0));   // Mole
-        baseUnits1.put("cd",  new Dimension(0, 0, 0, 0, 0, 0, 1));   // Candela
-        baseUnits1.put("Hz",  new Dimension(-1, 0, 0, 0, 0, 0, 0));  // Hertz
-        baseUnits1.put("N",   new Dimension(-2, 1, 1, 0, 0, 0, 0));  // Newton
-        baseUnits1.put("Pa",  new Dimension(-2, -1, 1, 0, 0, 0, 0)); // Pascal
-        baseUnits1.put("J",   new Dimension(-2, 2, 1, 0, 0, 0, 0));  // Joule
-        baseUnits1.put("W",   new Dimension(-3, 2, 1, 0, 0, 0, 0));  // Watt
-        baseUnits1.put("C",   new Dimension(1, 0, 0, 1, 0, 0, 0));   // Coulomb
-        baseUnits1.put("V",   new Dimension(-3, 2, 1, -1, 0, 0, 0)); // Volt
-        baseUnits1.put("F",   new Dimension(4, -2, -1, 2, 0, 0, 0)); // Farad
-        baseUnits1.put("O",   new Dimension(-3, 2, 1, -2, 0, 0, 0)); // Ohm
-        baseUnits1.put("S",   new Dimension(3, -2, -1, 2, 0, 0, 0)); // Siemens
-        baseUnits1.put("Wb",  new Dimension(-2, 2, 1, -1, 0, 0, 0)); // Weber
-        baseUnits1.put("T",   new Dimension(-2, 0, 1, -1, 0, 0, 0)); // Tesla
-        baseUnits1.put("H",   new Dimension(-2, 2, 1, -2, 0, 0, 0)); // Henry
-        baseUnits1.put("Bq",  new Dimension(-1, 0, 0, 0, 0, 0, 0));  // Becquerel
-        baseUnits1.put("Sv",  new Dimension(-2, 2, 0, 0, 0, 0, 0));  // Sievert
+        baseUnits1.put("s",   of(1, 0, 0, 0, 0, 0, 0));   // Second
+        baseUnits1.put("m",   of(0, 1, 0, 0, 0, 0, 0));   // Metre
+        baseUnits1.put("kg",  of(0, 0, 1, 0, 0, 0, 0));   // Kilogram
+        baseUnits1.put("A",   of(0, 0, 0, 1, 0, 0, 0));   // Ampere
+        baseUnits1.put("K",   of(0, 0, 0, 0, 1, 0, 0));   // Kelvin
+        baseUnits1.put("mol", of(0, 0, 0, 0, 0, 1, 0));   // Mole
+        baseUnits1.put("cd",  of(0, 0, 0, 0, 0, 0, 1));   // Candela
+        baseUnits1.put("Hz",  of(-1, 0, 0, 0, 0, 0, 0));  // Hertz
+        baseUnits1.put("N",   of(-2, 1, 1, 0, 0, 0, 0));  // Newton
+        baseUnits1.put("Pa",  of(-2, -1, 1, 0, 0, 0, 0)); // Pascal
+        baseUnits1.put("J",   of(-2, 2, 1, 0, 0, 0, 0));  // Joule
+        baseUnits1.put("W",   of(-3, 2, 1, 0, 0, 0, 0));  // Watt
+        baseUnits1.put("C",   of(1, 0, 0, 1, 0, 0, 0));   // Coulomb
+        baseUnits1.put("V",   of(-3, 2, 1, -1, 0, 0, 0)); // Volt
+        baseUnits1.put("F",   of(4, -2, -1, 2, 0, 0, 0)); // Farad
+        baseUnits1.put("O",   of(-3, 2, 1, -2, 0, 0, 0)); // Ohm
+        baseUnits1.put("S",   of(3, -2, -1, 2, 0, 0, 0)); // Siemens
+        baseUnits1.put("Wb",  of(-2, 2, 1, -1, 0, 0, 0)); // Weber
+        baseUnits1.put("T",   of(-2, 0, 1, -1, 0, 0, 0)); // Tesla
+        baseUnits1.put("H",   of(-2, 2, 1, -2, 0, 0, 0)); // Henry
+        baseUnits1.put("Bq",  of(-1, 0, 0, 0, 0, 0, 0));  // Becquerel
+        baseUnits1.put("Sv",  of(-2, 2, 0, 0, 0, 0, 0));  // Sievert
 
         baseUnits2 = new HashMap<>();
         for (Map.Entry<String, Dimension> entry : baseUnits1.entrySet()) {
             baseUnits2.put(entry.getValue(), entry.getKey());
         }
     }
-}
\ No newline at end of file
+}
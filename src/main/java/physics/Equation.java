@@ -13,6 +13,8 @@ import static physics.TokenType.*;
  */
 public class Equation extends collections.LinkedBinaryTree<Token> {
     private final Function<String, Quantity> variables;
+    // Postfix form of the tree that is actually evaluated, with every constant subexpression already computed
+    private Program program;
 
     public HashSet<String> variableUsage;
     public String variable;
@@ -26,6 +28,7 @@ public class Equation extends collections.LinkedBinaryTree<Token> {
         variableUsage = new HashSet<>();
         variable = null;
         parseEquation(equation);
+        program = Program.compile(root);
     }
 
     /**
@@ -79,7 +82,25 @@ public class Equation extends collections.LinkedBinaryTree<Token> {
      * @return Returns a Quantity that represents the final evaluation of the equation
      */
     public Quantity evaluate() {
-        return evaluateNode(root);
+        return program.run(variables);
+    }
+
+    /**
+     * Evaluates the equation to at least the given number of significant figures, which may be much faster than
+     * evaluating it in full
+     * @param sigFigs Number of significant figures the result will be displayed with
+     * @return Returns the evaluation of the equation, along with a bound on its error
+     */
+    public Approximation approximate(int sigFigs) {
+        return program.approximate(variables, sigFigs);
+    }
+
+    /**
+     * Gets the compiled form of the equation
+     * @return Returns the Program that evaluates this equation
+     */
+    Program getProgram() {
+        return program;
     }
 
     /**
@@ -168,84 +189,6 @@ public class Equation extends collections.LinkedBinaryTree<Token> {
         return a - b;
     }
 
-    /**
-     * Recursively evalutes the subtree with the given root
-     * @param root Root of the subtree to be evaluated
-     * @return Returns a quantity that is the evaluation of the subtree
-     */
-    public Quantity evaluateNode(BinaryTreeNode<Token> root) {
-        Quantity ret, left, right;
-        Token temp;
-
-        temp = root.getElement();
-
-        if (temp.isOperator()) {
-            left = evaluateNode(root.getLeft());
-            right = evaluateNode(root.getRight());
-            ret = computeTerm(temp.getOperator(), left, right);
-        }
-        else if (temp.isFunction()) {
-            ret = computeTerm(temp.getFunction(), evaluateNode(root.getLeft()));
-        }
-        else if (temp.isVariable()) {
-            ret = variables.apply(temp.getVariable());
-
-            if (ret == null) {
-                throw new RuntimeException("Variable \"" + temp.getVariable() + "\" is undefined.");
-            }
-        }
-        else
-            ret = temp.getValue();
-
-        return ret;
-    }
-
-    /**
-     * Computes the result of a given function
-     * @param function String representation of the function
-     * @param x argument of the function
-     * @return Returns f(x)
-     */
-    private Quantity computeTerm(String function, Quantity x) {
-        return switch (function) {
-            case "sqrt" -> Quantity.sqrt(x);
-            case "ln" -> Quantity.ln(x);
-            case "log" -> Quantity.log(x);
-            case "exp" -> Quantity.exp(x);
-            case "sin" -> Quantity.sin(x);
-            case "cos" -> Quantity.cos(x);
-            case "tan" -> Quantity.tan(x);
-            case "asin" -> Quantity.asin(x);
-            case "acos" -> Quantity.acos(x);
-            case "atan" -> Quantity.atan(x);
-            case "sinh" -> Quantity.sinh(x);
-            case "cosh" -> Quantity.cosh(x);
-            case "tanh" -> Quantity.tanh(x);
-            case "asinh" -> Quantity.asinh(x);
-            case "acosh" -> Quantity.acosh(x);
-            case "atanh" -> Quantity.atanh(x);
-            default -> throw new IllegalStateException("Unexpected value: " + function);
-        };
-    }
-
-    /**
-     * Computes the result of a given operation
-     * @param operator The operation to perform
-     * @param left The left operand
-     * @param right The right operand
-     * @return Returns the result of the operation
-     */
-    private static Quantity computeTerm(char operator, Quantity left, Quantity right) {
-        return switch (operator) {
-            case '+' -> left.add(right);
-            case '-' -> left.subtract(right);
-            case '*', Parsing.IMPLICIT_M -> left.multiply(right);
-            case '/', Parsing.IMPLICIT_D -> left.divide(right);
-            case '^' -> left.pow(right);
-            default -> throw new IllegalStateException("Unexpected value: " + operator);
-        };
-    }
-
     /**
      * Checks whether this equation has any subequations
      * @return Returns true if the root has no children, false otherwise
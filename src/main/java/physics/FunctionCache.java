@@ -0,0 +1,141 @@
+package physics;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of recently computed functions, such as sin or ln, so that repeated calls on the same
+ * argument are not computed again.
+ * Entries are keyed by the function, the exact argument, and the precision it was computed to. Arguments that are
+ * equal in value but differ in scale are kept apart, so that a cached result is always identical to a computed one.
+ * Functions are computed outside the lock, so that lookups from other threads are not held up by them.
+ * The least recently used entry is evicted once the cache is full.
+ */
+public class FunctionCache {
+    private final LinkedHashMap<Key, BigDecimal> cache;
+    private volatile boolean enabled = true;
+    private long hits;
+    private long misses;
+
+    private record Key(String function, BigDecimal argument, MathContext mc) { }
+
+    /**
+     * Functional interface for a function computed to a given precision
+     */
+    @FunctionalInterface
+    interface Computation {
+        /**
+         * Computes the function
+         * @param x The argument
+         * @param mc Precision of the result
+         * @return Returns the value of the function
+         */
+        BigDecimal apply(BigDecimal x, MathContext mc);
+    }
+
+    /**
+     * Creates an empty FunctionCache
+     * @param capacity Maximum number of results to hold
+     */
+    public FunctionCache(int capacity) {
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BigDecimal> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the value of a function, computing it only if it is not already cached.
+     * Functions that throw are not cached.
+     * @param function Name of the function, as in Program.FUNCTIONS
+     * @param x The argument
+     * @param mc Precision of the result
+     * @param computation Computes the function
+     * @return Returns the value of the function
+     */
+    BigDecimal get(String function, BigDecimal x, MathContext mc, Computation computation) {
+        if (!enabled)
+            return computation.apply(x, mc);
+
+        Key key = new Key(function, x, mc);
+        synchronized (this) {
+            BigDecimal result = cache.get(key);
+            if (result != null) {
+                hits++;
+                return result;
+            }
+
+            misses++;
+        }
+
+        BigDecimal result = computation.apply(x, mc);
+        synchronized (this) {
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Sets whether results are looked up and stored. Disabling the cache keeps the results already held.
+     * @param enabled True to use the cache, false to compute every function
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Checks whether results are looked up and stored
+     * @return Returns true if the cache is in use, false otherwise
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Removes all results from the cache
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Gets the number of results held
+     * @return Returns the size of the cache
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Gets the number of lookups that were answered from the cache
+     * @return Returns the number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that required the function to be computed
+     * @return Returns the number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the fraction of lookups that were answered from the cache
+     * @return Returns the hit rate, or 0 if there have been no lookups
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized String toString() {
+        return "FunctionCache{size=" + cache.size() + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+}
@@ -0,0 +1,469 @@
+package physics;
+
+import java.util.*;
+
+import static physics.TokenType.*;
+
+/**
+ * Splits an equation string into tokens in a single pass over its characters.
+ * Numbers are scanned directly, while functions, units, and variables are recognized through lookup tables
+ * indexed by their first character, so no regular expression or backtracking is involved.
+ * A Lexer instance remembers the tokens of the last string it lexed, along with their positions, so that
+ * after an edit only the tokens around the edited span need to be scanned again.
+ */
+public class Lexer {
+    private static final String[][] FUNCTIONS;
+    private static final String[] REPLACEMENT_FUNCTIONS = {"con", "M", "BE", "HL", "MMass", "Pop", "Act"};
+    private static final String PREFIXES = "QRYZEPTGMkhadcmunpfzyrq";
+    private static final String LONG_PREFIX = "da";
+    private static final String WHITESPACE = " \t\n\u000B\f\r";
+    private static final String[][] UNITS;
+    // Furthest past its start that matching a token can look, ignoring variables
+    private static final int LOOKAHEAD;
+
+    // Lookup table of the variables last lexed with, published together with the set it was built for
+    private static volatile VariableTable variableTable;
+
+    private String text;
+    private String[][] textVariables;
+    private List<Lexeme> lexemes;
+
+    /**
+     * A token along with the span of the string it was read from
+     * @param token The token that was read
+     * @param start Index of the first character of the token
+     * @param end Index just past the last character of the token
+     */
+    private record Lexeme(Token token, int start, int end) {
+        /**
+         * Moves this lexeme by the given number of characters
+         * @param delta Number of characters to move by
+         * @return Returns a lexeme with the same token, at the new position
+         */
+        Lexeme shift(int delta) {
+            return new Lexeme(token, start + delta, end + delta);
+        }
+    }
+
+    /**
+     * A lookup table of variables, along with the set of variables it was built from
+     * @param variables Set of allowed variable strings
+     * @param table Lookup table of the variables, indexed by first character
+     */
+    private record VariableTable(Set<String> variables, String[][] table) {
+    }
+
+    /**
+     * Turns a string into the series of tokens it is made of, without applying any of the implicit operations
+     * @param equation The string to be scanned
+     * @param variables Set of allowed variable strings in the equation
+     * @return Returns a list of the tokens, in the order in which they appear
+     */
+    public static List<Token> scan(String equation, Set<String> variables) {
+        return tokens(scan(equation, 0, getVariableTable(variables), new ArrayList<>()));
+    }
+
+    /**
+     * Turns a string into the series of tokens it is made of, without applying any of the implicit operations.
+     * If the string is an edit of the one previously given to this Lexer, and the variables have not changed,
+     * only the tokens that could be affected by the edit are scanned again, and the rest are reused.
+     * @param equation The string to be scanned
+     * @param variables Set of allowed variable strings in the equation
+     * @return Returns a list of the tokens, in the order in which they appear
+     */
+    public List<Token> lex(String equation, Set<String> variables) {
+        String[][] variableTable = getVariableTable(variables);
+
+        try {
+            if (lexemes == null || textVariables != variableTable)
+                lexemes = scan(equation, 0, variableTable, new ArrayList<>());
+            else if (!equation.equals(text))
+                lexemes = rescan(equation, variableTable);
+        }
+        catch (RuntimeException e) {
+            lexemes = null;
+            throw e;
+        }
+
+        text = equation;
+        textVariables = variableTable;
+        return tokens(lexemes);
+    }
+
+    /**
+     * Scans the edited portion of the previously lexed string again, reusing the tokens before and after it.
+     * @param equation The edited string
+     * @param variableTable Lookup table of the variables
+     * @return Returns the lexemes of the edited string
+     */
+    private List<Lexeme> rescan(String equation, String[][] variableTable) {
+        int oldLength = text.length();
+        int newLength = equation.length();
+        int prefix = 0;
+        int suffix = 0;
+
+        while (prefix < oldLength && prefix < newLength && text.charAt(prefix) == equation.charAt(prefix))
+            prefix++;
+        while (suffix < oldLength - prefix && suffix < newLength - prefix
+                && text.charAt(oldLength - suffix - 1) == equation.charAt(newLength - suffix - 1))
+            suffix++;
+
+        // Whether a lookup function matches depends on brackets arbitrarily far ahead
+        if (containsBracket(text, prefix, oldLength - suffix) || containsBracket(equation, prefix, newLength - suffix))
+            return scan(equation, 0, variableTable, new ArrayList<>());
+
+        // Keep the tokens whose matching never looked at the edited span
+        int lookahead = Math.max(LOOKAHEAD, maxLength(variableTable));
+        int kept = 0;
+        while (kept < lexemes.size() && Math.max(lexemes.get(kept).end() + 3, lexemes.get(kept).start() + lookahead) <= prefix)
+            kept++;
+
+        List<Lexeme> output = new ArrayList<>(lexemes.subList(0, kept));
+        int pos = kept == 0 ? 0 : lexemes.get(kept - 1).end();
+        int editEnd = newLength - suffix;
+        int delta = newLength - oldLength;
+        int old = kept;
+        Lexeme lexeme;
+
+        while ((lexeme = nextLexeme(equation, pos, variableTable)) != null) {
+            output.add(lexeme);
+            pos = lexeme.end();
+
+            if (pos < editEnd)
+                continue;
+
+            // Past the edit, so once we end where a previous token ended, the rest of the tokens are unchanged
+            while (old < lexemes.size() && lexemes.get(old).end() < pos - delta)
+                old++;
+            if (old < lexemes.size() && lexemes.get(old).end() == pos - delta) {
+                for (int i = old + 1; i < lexemes.size(); i++)
+                    output.add(lexemes.get(i).shift(delta));
+                break;
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Scans a string from the given position to its end
+     * @param equation The string to be scanned
+     * @param pos Position to start scanning from
+     * @param variableTable Lookup table of the variables
+     * @param output List to add the lexemes to
+     * @return Returns the output list
+     */
+    private static List<Lexeme> scan(String equation, int pos, String[][] variableTable, List<Lexeme> output) {
+        Lexeme lexeme;
+
+        while ((lexeme = nextLexeme(equation, pos, variableTable)) != null) {
+            output.add(lexeme);
+            pos = lexeme.end();
+        }
+
+        return output;
+    }
+
+    /**
+     * Reads the next token at or after the given position.
+     * Only whitespace may be skipped over to reach it.
+     * @param equation The string to be scanned
+     * @param pos Position to start reading from
+     * @param variableTable Lookup table of the variables
+     * @return Returns the next lexeme, or null if there are no more tokens
+     */
+    private static Lexeme nextLexeme(String equation, int pos, String[][] variableTable) {
+        int length = equation.length();
+        int gapStart = pos;
+
+        while (pos < length) {
+            char c = equation.charAt(pos);
+            TokenType type;
+            int end;
+
+            if ((end = matchNumber(equation, pos)) != -1)
+                type = NUMBER;
+            else if ("()^+/*-".indexOf(c) != -1) {
+                end = pos + 1;
+                type = switch (c) {
+                    case '(' -> LBRACKET;
+                    case ')' -> RBRACKET;
+                    default -> OPERATOR;
+                };
+            }
+            else if ((end = matchLongest(lookup(FUNCTIONS, c), equation, pos)) != -1)
+                type = FUNCTION;
+            else if ((end = matchReplacementFunction(equation, pos)) != -1)
+                type = null;
+            else if ((end = matchUnit(equation, pos)) != -1)
+                type = UNIT;
+            else if ((end = matchLongest(lookup(variableTable, c), equation, pos)) != -1)
+                type = VARIABLE;
+            else {
+                pos++;
+                continue;
+            }
+
+            if (gapStart != pos)
+                catchUnidentifiedToken(equation.substring(gapStart, pos));
+
+            String tokenString = equation.substring(pos, end);
+            if (type == null)
+                return new Lexeme(new Token(Parsing.replaceFunction(tokenString)), pos, end);
+            else
+                return new Lexeme(new Token(tokenString, type), pos, end);
+        }
+
+        if (gapStart != length)
+            catchUnidentifiedToken(equation.substring(gapStart));
+
+        return null;
+    }
+
+    /**
+     * Extracts the tokens from a list of lexemes
+     * @param lexemes The lexemes to be considered
+     * @return Returns a new list with the token of each lexeme
+     */
+    private static List<Token> tokens(List<Lexeme> lexemes) {
+        List<Token> tokens = new ArrayList<>(lexemes.size());
+
+        for (Lexeme lexeme : lexemes)
+            tokens.add(lexeme.token());
+
+        return tokens;
+    }
+
+    /**
+     * Checks whether a portion of a string contains a bracket
+     * @param str String to be checked
+     * @param start Index to start checking at
+     * @param end Index to stop checking before
+     * @return Returns true if there is a bracket between start and end, false otherwise
+     */
+    private static boolean containsBracket(String str, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (str.charAt(i) == '(' || str.charAt(i) == ')')
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Matches a number, optionally with a decimal point and an exponent, at the given position
+     * @param str String to be scanned
+     * @param start Position at which the number must start
+     * @return Returns the index just past the number, or -1 if no number starts at the given position
+     */
+    private static int matchNumber(String str, int start) {
+        int length = str.length();
+        int pos = skipDigits(str, start);
+
+        if (pos == start)
+            return -1;
+
+        if (pos < length && str.charAt(pos) == '.')
+            pos = skipDigits(str, pos + 1);
+
+        // Exponent is only part of the number if digits follow it, otherwise the E is a prefix
+        if (pos < length && str.charAt(pos) == 'E') {
+            int exponent = pos + 1;
+
+            if (exponent < length && (str.charAt(exponent) == '+' || str.charAt(exponent) == '-'))
+                exponent++;
+
+            int end = skipDigits(str, exponent);
+            if (end != exponent)
+                pos = end;
+        }
+
+        return pos;
+    }
+
+    /**
+     * Finds the end of a run of digits
+     * @param str String to be scanned
+     * @param start Position at which to start
+     * @return Returns the index of the first non-digit at or after start
+     */
+    private static int skipDigits(String str, int start) {
+        int length = str.length();
+
+        while (start < length && str.charAt(start) >= '0' && str.charAt(start) <= '9')
+            start++;
+
+        return start;
+    }
+
+    /**
+     * Matches a lookup function, such as con(c) or M(14C), at the given position.
+     * The argument may contain nested brackets.
+     * @param str String to be scanned
+     * @param start Position at which the function must start
+     * @return Returns the index just past the closing bracket, or -1 if no lookup function starts at the given position
+     */
+    private static int matchReplacementFunction(String str, int start) {
+        for (String function : REPLACEMENT_FUNCTIONS) {
+            int bracket = start + function.length();
+
+            if (!str.startsWith(function, start) || bracket + 1 >= str.length() || str.charAt(bracket) != '(')
+                continue;
+            // Argument must be non-empty
+            if (str.charAt(bracket + 1) == ')' || str.indexOf(')', bracket + 1) == -1)
+                continue;
+
+            int end = Parsing.findBracketPair(str, bracket);
+            if (end == -1)
+                throw new RuntimeException("Unmatched bracket in \"" + str.substring(start) + "\"");
+
+            return end + 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Matches a unit, optionally preceded by an SI prefix, at the given position.
+     * A prefix is only taken if a unit follows it, in which case the prefixed unit is preferred over an
+     * unprefixed one. The longest unit that matches is always taken.
+     * @param str String to be scanned
+     * @param start Position at which the unit must start
+     * @return Returns the index just past the unit, or -1 if no unit starts at the given position
+     */
+    private static int matchUnit(String str, int start) {
+        int end;
+        int length = str.length();
+
+        if (PREFIXES.indexOf(str.charAt(start)) != -1 && start + 1 < length
+                && (end = matchLongest(lookup(UNITS, str.charAt(start + 1)), str, start + 1)) != -1)
+            return end;
+
+        if (str.startsWith(LONG_PREFIX, start) && start + 2 < length
+                && (end = matchLongest(lookup(UNITS, str.charAt(start + 2)), str, start + 2)) != -1)
+            return end;
+
+        return matchLongest(lookup(UNITS, str.charAt(start)), str, start);
+    }
+
+    /**
+     * Finds the longest candidate that appears at the given position
+     * @param candidates Candidates to be matched, sorted from longest to shortest. May be null.
+     * @param str String to be scanned
+     * @param start Position at which the candidate must start
+     * @return Returns the index just past the matched candidate, or -1 if none of them match
+     */
+    private static int matchLongest(String[] candidates, String str, int start) {
+        if (candidates == null)
+            return -1;
+
+        for (String candidate : candidates) {
+            if (str.startsWith(candidate, start))
+                return start + candidate.length();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets the candidates that begin with the given character
+     * @param table Lookup table, indexed by first character
+     * @param c First character of the candidates
+     * @return Returns the candidates sorted from longest to shortest, or null if there are none
+     */
+    private static String[] lookup(String[][] table, char c) {
+        return c < table.length ? table[c] : null;
+    }
+
+    /**
+     * Builds a lookup table from a collection of strings.
+     * Each entry holds the strings that begin with its index, sorted from longest to shortest.
+     * @param strings Strings to be placed in the table
+     * @return Returns the lookup table
+     */
+    private static String[][] buildTable(Collection<String> strings) {
+        Map<Character, List<String>> grouped = new HashMap<>();
+        char max = 0;
+
+        for (String str : strings) {
+            if (str.isEmpty())
+                continue;
+
+            grouped.computeIfAbsent(str.charAt(0), k -> new ArrayList<>()).add(str);
+            max = (char) Math.max(max, str.charAt(0));
+        }
+
+        String[][] table = new String[max + 1][];
+        for (Map.Entry<Character, List<String>> entry : grouped.entrySet()) {
+            List<String> group = entry.getValue();
+            group.sort(Comparator.comparingInt(o -> -o.length()));
+            table[entry.getKey()] = group.toArray(new String[0]);
+        }
+
+        return table;
+    }
+
+    /**
+     * Finds the length of the longest string in a lookup table
+     * @param table Lookup table, indexed by first character
+     * @return Returns the length of the longest string in the table
+     */
+    private static int maxLength(String[][] table) {
+        int max = 0;
+
+        for (String[] candidates : table) {
+            if (candidates != null)
+                max = Math.max(max, candidates[0].length());
+        }
+
+        return max;
+    }
+
+    /**
+     * Gets the lookup table for the given variables.
+     * The table is cached, and only rebuilt when the set of variables differs from the one it was built for.
+     * @param variables Set of allowed variable strings
+     * @return Returns the lookup table of variables
+     */
+    private static String[][] getVariableTable(Set<String> variables) {
+        // Read once, so the table always matches the set it is checked against
+        VariableTable cached = variableTable;
+
+        if (cached == null || !variables.equals(cached.variables())) {
+            cached = new VariableTable(Set.copyOf(variables), buildTable(variables));
+            variableTable = cached;
+        }
+
+        return cached.table();
+    }
+
+    /**
+     * Checks whether the given unidentified token can be ignored.
+     * If it is a whitespace, nothing happens. Otherwise an error is thrown.
+     * @param token The token to be considered.
+     */
+    private static void catchUnidentifiedToken(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (WHITESPACE.indexOf(token.charAt(i)) == -1)
+                throw new RuntimeException("Unidentified token: \"" + token + "\"");
+        }
+    }
+
+    static {
+        List<String> functions = new ArrayList<>(List.of("sqrt", "ln", "log", "exp"));
+        for (String trig : new String[]{"sin", "cos", "tan", "sec", "csc", "cot"}) {
+            functions.addAll(List.of(trig, trig + "h", "a" + trig, "a" + trig + "h"));
+        }
+        FUNCTIONS = buildTable(functions);
+
+        List<String> units = new ArrayList<>(Dimension.getSIUnitStrings());
+        units.set(units.indexOf("kg"), "g");
+        units.addAll(Units.getUnitStrings());
+        UNITS = buildTable(units);
+
+        int lookahead = Math.max(maxLength(FUNCTIONS), maxLength(UNITS) + LONG_PREFIX.length());
+        for (String function : REPLACEMENT_FUNCTIONS)
+            lookahead = Math.max(lookahead, function.length() + 2);
+        LOOKAHEAD = lookahead;
+    }
+}
@@ -0,0 +1,62 @@
+package physics;
+
+/**
+ * A nuclide in the saved Nuclide data, as returned by a NuclideQuery.
+ * Only Z and A are stored; every other property is looked up from the data when it is asked for.
+ * @param Z Number of protons in nuclide
+ * @param A Mass number of nuclide
+ */
+public record Nuclide(int Z, int A) {
+    /**
+     * Gets the number of neutrons
+     * @return Returns A - Z
+     */
+    public int getN() {
+        return A - Z;
+    }
+
+    /**
+     * Gets the element symbol
+     * @return Returns the symbol, such as "He"
+     */
+    public String getSymbol() {
+        NuclideTable table = Nuclides.getTable();
+        return table.getSymbol(table.getRow(Z, A - Z));
+    }
+
+    /**
+     * Returns the mass of this nuclide
+     * @return Returns a Quantity that is the mass of this nuclide
+     */
+    public Quantity getMass() {
+        return Nuclides.getMass(Z, A);
+    }
+
+    /**
+     * Returns the half-life of this nuclide
+     * @return Returns a Quantity that is the half-life of this nuclide
+     */
+    public Quantity getHalfLife() {
+        return Nuclides.getHalfLife(Z, A);
+    }
+
+    /**
+     * Returns the ground state binding energy of this nuclide
+     * @return Returns a Quantity that is the ground state binding energy of this nuclide
+     */
+    public Quantity getBindingEnergy() {
+        return Nuclides.getBindingEnergy(Z, A);
+    }
+
+    /**
+     * Returns the decay modes of this nuclide, such as "B-" or "A"
+     * @return Returns the decay modes of this nuclide, in the order listed in the data. Empty if it is stable
+     */
+    public String[] getDecayModes() {
+        return Nuclides.getDecayModes(Z, A);
+    }
+
+    public String toString() {
+        return A + getSymbol();
+    }
+}
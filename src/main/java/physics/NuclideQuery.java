@@ -0,0 +1,297 @@
+package physics;
+
+import physics.exceptions.IncompatibleUnitsException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A range and predicate query over the saved Nuclide data, such as all isotopes of uranium, or all beta-minus
+ * emitters with A from 100 to 120.
+ * Each property that can be ranged over has an index of the rows sorted by its value, built once. A query binary
+ * searches the index of every range it has, walks only the narrowest, and checks the other conditions against the
+ * values of each row in turn. Nuclide records are only created for rows that pass every range.
+ */
+public class NuclideQuery {
+    private static final NuclideTable table = Nuclides.getTable();
+    private static final double KEV = Units.getUnit("keV").scaledValue().doubleValue();
+
+    // Properties that can be ranged over, and the sorted index of each
+    private static final int PROTONS = 0;
+    private static final int MASS_NUMBER = 1;
+    private static final int NEUTRONS = 2;
+    private static final int HALF_LIFE = 3;
+    private static final int BINDING_ENERGY_PER_NUCLEON = 4;
+    private static final Index[] INDEXES = {
+            new Index(table::getZ),
+            new Index(row -> table.getZ(row) + table.getN(row)),
+            new Index(table::getN),
+            new Index(row -> table.getValue(row, NuclideTable.HALF_LIFE)),
+            new Index(row -> table.getValue(row, NuclideTable.BINDING_ENERGY) * KEV)
+    };
+
+    private final double[] min = new double[INDEXES.length];
+    private final double[] max = new double[INDEXES.length];
+    private final boolean[] ranged = new boolean[INDEXES.length];
+    private final List<String> decayModes = new ArrayList<>();
+    private final List<Predicate<Nuclide>> filters = new ArrayList<>();
+
+    /**
+     * The rows with a value for a property, sorted by that value
+     */
+    private static class Index {
+        private final IntToDoubleFunction property;
+        private final int[] rows;
+        private final double[] values;
+
+        /**
+         * Builds the index of a property
+         * @param property Gives the value of the property for a row, or NaN if it is missing
+         */
+        Index(IntToDoubleFunction property) {
+            this.property = property;
+            rows = IntStream.range(0, table.size())
+                    .filter(row -> !Double.isNaN(property.applyAsDouble(row)))
+                    .boxed()
+                    .sorted((a, b) -> Double.compare(property.applyAsDouble(a), property.applyAsDouble(b)))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            values = new double[rows.length];
+            for (int i = 0; i < rows.length; i++)
+                values[i] = property.applyAsDouble(rows[i]);
+        }
+
+        /**
+         * Finds the first position with at least the given value
+         * @param value The lower bound
+         * @return Returns the index in rows of the first value not less than the bound
+         */
+        int from(double value) {
+            int low = 0, high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < value)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            return low;
+        }
+
+        /**
+         * Finds the position just past the last value no greater than the given value
+         * @param value The upper bound
+         * @return Returns the index in rows just past the last value not greater than the bound
+         */
+        int to(double value) {
+            int low = 0, high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] <= value)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            return low;
+        }
+    }
+
+    /**
+     * Creates a query that matches every nuclide
+     */
+    NuclideQuery() {
+    }
+
+    /**
+     * Restricts the query to one element
+     * @param Z Number of protons
+     * @return Returns this query
+     */
+    public NuclideQuery protons(int Z) {
+        return protons(Z, Z);
+    }
+
+    /**
+     * Restricts the query to a range of elements
+     * @param min Smallest number of protons, inclusive
+     * @param max Largest number of protons, inclusive
+     * @return Returns this query
+     */
+    public NuclideQuery protons(int min, int max) {
+        return range(PROTONS, min, max);
+    }
+
+    /**
+     * Restricts the query to a range of mass numbers
+     * @param min Smallest mass number, inclusive
+     * @param max Largest mass number, inclusive
+     * @return Returns this query
+     */
+    public NuclideQuery massNumber(int min, int max) {
+        return range(MASS_NUMBER, min, max);
+    }
+
+    /**
+     * Restricts the query to a range of neutron numbers
+     * @param min Smallest number of neutrons, inclusive
+     * @param max Largest number of neutrons, inclusive
+     * @return Returns this query
+     */
+    public NuclideQuery neutrons(int min, int max) {
+        return range(NEUTRONS, min, max);
+    }
+
+    /**
+     * Restricts the query to a range of half-lives. Nuclides with no known half-life, including stable ones, are
+     * excluded
+     * @param min Shortest half-life, inclusive
+     * @param max Longest half-life, inclusive
+     * @return Returns this query
+     * @throws IncompatibleUnitsException If either bound is not a time
+     */
+    public NuclideQuery halfLife(Quantity min, Quantity max) {
+        Dimension time = Dimension.of("s");
+        return range(HALF_LIFE, toDouble(min, time), toDouble(max, time));
+    }
+
+    /**
+     * Restricts the query to a range of ground state binding energies per nucleon
+     * @param min Smallest binding energy per nucleon, inclusive
+     * @param max Largest binding energy per nucleon, inclusive
+     * @return Returns this query
+     * @throws IncompatibleUnitsException If either bound is not an energy
+     */
+    public NuclideQuery bindingEnergyPerNucleon(Quantity min, Quantity max) {
+        Dimension energy = Dimension.of("J");
+        return range(BINDING_ENERGY_PER_NUCLEON, toDouble(min, energy), toDouble(max, energy));
+    }
+
+    /**
+     * Restricts the query to nuclides with a decay mode
+     * @param mode The decay mode, as listed in the data, such as "B-" or "A"
+     * @return Returns this query
+     */
+    public NuclideQuery decayMode(String mode) {
+        decayModes.add(mode);
+        return this;
+    }
+
+    /**
+     * Restricts the query to nuclides that satisfy a condition. Conditions are checked after every range
+     * @param filter The condition
+     * @return Returns this query
+     */
+    public NuclideQuery filter(Predicate<Nuclide> filter) {
+        filters.add(filter);
+        return this;
+    }
+
+    /**
+     * Runs the query. Nuclides are found as the stream is consumed
+     * @return Returns a stream of the matching nuclides, sorted by the property with the narrowest range
+     */
+    public Stream<Nuclide> stream() {
+        Stream<Nuclide> nuclides = rows()
+                .mapToObj(row -> new Nuclide(table.getZ(row), table.getZ(row) + table.getN(row)));
+
+        for (Predicate<Nuclide> filter : filters)
+            nuclides = nuclides.filter(filter);
+
+        return nuclides;
+    }
+
+    /**
+     * Runs the query in parallel, for expensive filters
+     * @return Returns a parallel stream of the matching nuclides
+     */
+    public Stream<Nuclide> parallelStream() {
+        return stream().parallel();
+    }
+
+    /**
+     * Finds the rows that satisfy every range and decay mode
+     * @return Returns the rows from the narrowest index that match
+     */
+    private IntStream rows() {
+        Index narrowest = INDEXES[PROTONS];
+        int from = 0, to = narrowest.rows.length;
+
+        for (int i = 0; i < INDEXES.length; i++) {
+            if (!ranged[i])
+                continue;
+
+            int start = INDEXES[i].from(min[i]), end = INDEXES[i].to(max[i]);
+            if (end - start < to - from) {
+                narrowest = INDEXES[i];
+                from = start;
+                to = end;
+            }
+        }
+
+        IntStream rows = Arrays.stream(narrowest.rows, from, Math.max(from, to));
+        return rows.filter(this::matches);
+    }
+
+    /**
+     * Checks a row against every range and decay mode
+     * @param row Row of the nuclide
+     * @return Returns true if the row matches, false otherwise
+     */
+    private boolean matches(int row) {
+        for (int i = 0; i < INDEXES.length; i++) {
+            if (!ranged[i])
+                continue;
+
+            // NaN, for a missing value, fails both comparisons
+            double value = INDEXES[i].property.applyAsDouble(row);
+            if (!(value >= min[i] && value <= max[i]))
+                return false;
+        }
+
+        if (!decayModes.isEmpty())
+            return Arrays.asList(table.getDecayModes(row)).containsAll(decayModes);
+
+        return true;
+    }
+
+    /**
+     * Restricts the query to a range of a property, narrowing any range already given
+     * @param index The property
+     * @param min Smallest value, inclusive
+     * @param max Largest value, inclusive
+     * @return Returns this query
+     */
+    private NuclideQuery range(int index, double min, double max) {
+        if (ranged[index]) {
+            min = Math.max(min, this.min[index]);
+            max = Math.min(max, this.max[index]);
+        }
+
+        ranged[index] = true;
+        this.min[index] = min;
+        this.max[index] = max;
+        return this;
+    }
+
+    /**
+     * Converts a bound to base SI units
+     * @param bound The bound
+     * @param dimension Dimensions the bound must have
+     * @return Returns the value of the bound
+     * @throws IncompatibleUnitsException If the bound has other dimensions
+     */
+    private static double toDouble(Quantity bound, Dimension dimension) {
+        if (bound.getDimension() != dimension)
+            throw new IncompatibleUnitsException(dimension.toString(), bound.getDimension().toString());
+
+        return bound.scaledValue().doubleValue();
+    }
+}
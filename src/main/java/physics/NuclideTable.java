@@ -0,0 +1,375 @@
+package physics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A read-only view of the nuclide data in a compact binary snapshot of the .csv file.
+ * The snapshot is memory-mapped, so lookups read each value straight from the file without parsing it, and only the
+ * short string table of element symbols and decay modes is copied onto the heap.
+ * The snapshot records the size and modification time of the .csv file it was generated from, and is generated again
+ * whenever they no longer match. If it cannot be written, the same snapshot is built in memory instead.
+ * <p>
+ * Layout, in little-endian order:
+ * <pre>
+ * header   magic, version, .csv size, .csv modification time, record count, max Z, max N, string count
+ * index    int row for each (Z, N) at Z * (maxN + 1) + N, or -1
+ * records  fixed-width, one per row: Z, N, symbol, decay mode count, decay modes, each value column, then the
+ *          percentage of each decay mode
+ * strings  length-prefixed UTF-8 strings, referred to by index from the records
+ * </pre>
+ */
+final class NuclideTable {
+    // Value columns of each record. Missing values are NaN
+    static final int BINDING_ENERGY = 0;
+    static final int BINDING_ENERGY_UNCERTAINTY = 1;
+    static final int MASS = 2;
+    static final int MASS_UNCERTAINTY = 3;
+    static final int HALF_LIFE = 4;
+    static final int HALF_LIFE_UNCERTAINTY = 5;
+    static final int VALUE_COLUMNS = 6;
+
+    // Indices of the columns in the .csv file. The value columns are listed in the order they are stored, and the
+    // percentage of each decay mode follows it
+    private static final int Z_COLUMN = 0;
+    private static final int N_COLUMN = 1;
+    private static final int SYMBOL_COLUMN = 2;
+    private static final int[] DECAY_COLUMNS = {18, 21, 24};
+    private static final int[] VALUE_CSV_COLUMNS = {44, 45, 46, 47, 16, 17};
+
+    private static final int MAGIC = 0x4E55434C;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 40;
+
+    // Offsets within a record
+    private static final int Z_OFFSET = 0;
+    private static final int N_OFFSET = 2;
+    private static final int SYMBOL_OFFSET = 4;
+    private static final int DECAY_COUNT_OFFSET = 6;
+    private static final int DECAY_OFFSET = 8;
+    private static final int VALUE_OFFSET = 16;
+    private static final int DECAY_PERCENTAGE_OFFSET = VALUE_OFFSET + VALUE_COLUMNS * Double.BYTES;
+    private static final int RECORD_SIZE = DECAY_PERCENTAGE_OFFSET + DECAY_COLUMNS.length * Double.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int maxZ;
+    private final int maxN;
+    private final int recordsOffset;
+    private final String[] strings;
+
+    /**
+     * Creates a view of a snapshot
+     * @param buffer The snapshot, positioned at its start
+     */
+    private NuclideTable(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        size = buffer.getInt(24);
+        maxZ = buffer.getInt(28);
+        maxN = buffer.getInt(32);
+        recordsOffset = HEADER_SIZE + (maxZ + 1) * (maxN + 1) * Integer.BYTES;
+
+        strings = new String[buffer.getInt(36)];
+        int position = recordsOffset + size * RECORD_SIZE;
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[buffer.getShort(position)];
+            buffer.get(position + Short.BYTES, bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8).intern();
+            position += Short.BYTES + bytes.length;
+        }
+    }
+
+    /**
+     * Opens the snapshot of a .csv file, generating it first if it is missing or out of date
+     * @param csv Path of the .csv file
+     * @param snapshot Path of the binary snapshot
+     * @param rows Number of rows of data in the .csv file, after the header
+     * @return Returns a view of the snapshot
+     * @throws RuntimeException If the .csv file is missing or invalid
+     */
+    static NuclideTable open(Path csv, Path snapshot, int rows) {
+        long csvSize, csvModified;
+        try {
+            csvSize = Files.size(csv);
+            csvModified = Files.getLastModifiedTime(csv).toMillis();
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Missing or invalid file " + csv);
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (isCurrent(mapped, csvSize, csvModified))
+                return new NuclideTable(mapped);
+        }
+        catch (IOException ignored) {
+            // Missing or unreadable, so generate it again
+        }
+
+        ByteBuffer generated = generate(csv, rows, csvSize, csvModified);
+        try {
+            Path directory = Files.createDirectories(snapshot.toAbsolutePath().getParent());
+            Path temporary = Files.createTempFile(directory, "nuclides", ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                    ByteBuffer contents = generated.duplicate();
+                    while (contents.hasRemaining())
+                        channel.write(contents);
+                }
+                Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(temporary);
+            }
+
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                return new NuclideTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+        catch (IOException | UnsupportedOperationException | SecurityException e) {
+            // Read-only location, so keep the snapshot in memory
+            return new NuclideTable(generated);
+        }
+    }
+
+    /**
+     * Checks whether a snapshot was generated from the current .csv file by this version
+     * @param buffer The snapshot
+     * @param csvSize Size of the .csv file
+     * @param csvModified Modification time of the .csv file
+     * @return Returns true if the snapshot can be used, false if it must be generated again
+     */
+    private static boolean isCurrent(ByteBuffer buffer, long csvSize, long csvModified) {
+        return buffer.capacity() >= HEADER_SIZE && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+                && buffer.getLong(8) == csvSize && buffer.getLong(16) == csvModified
+                && getExpectedSize(buffer) == buffer.capacity();
+    }
+
+    /**
+     * Finds the size a snapshot should be from its header and string table, so that a truncated or corrupted file is
+     * generated again rather than read past its end
+     * @param buffer The snapshot, with a complete header
+     * @return Returns the size in bytes implied by the snapshot, or -1 if its header or string table is inconsistent
+     */
+    private static long getExpectedSize(ByteBuffer buffer) {
+        int size = buffer.getInt(24), maxZ = buffer.getInt(28), maxN = buffer.getInt(32), count = buffer.getInt(36);
+        if (size < 0 || maxZ < 0 || maxN < 0 || count < 0)
+            return -1;
+
+        long position = HEADER_SIZE + (long) (maxZ + 1) * (maxN + 1) * Integer.BYTES + (long) size * RECORD_SIZE;
+        for (int i = 0; i < count; i++) {
+            if (position < 0 || position + Short.BYTES > buffer.capacity())
+                return -1;
+
+            short length = buffer.getShort((int) position);
+            if (length < 0)
+                return -1;
+
+            position += Short.BYTES + length;
+        }
+
+        return position;
+    }
+
+    /**
+     * Parses a .csv file into a snapshot
+     * @param csv Path of the .csv file
+     * @param rows Number of rows of data in the .csv file
+     * @param csvSize Size of the .csv file
+     * @param csvModified Modification time of the .csv file
+     * @return Returns the snapshot, positioned at its start
+     * @throws RuntimeException If the .csv file is missing or invalid
+     */
+    private static ByteBuffer generate(Path csv, int rows, long csvSize, long csvModified) {
+        String[][] data = new String[rows][];
+
+        try (BufferedReader reader = Files.newBufferedReader(csv)) {
+            //Drop header
+            reader.readLine();
+            for (int i = 0; i < rows; i++)
+                data[i] = reader.readLine().split(",");
+        }
+        catch (Exception e) {
+            throw new RuntimeException("Missing or invalid file " + csv);
+        }
+
+        int maxZ = 0, maxN = 0;
+        for (String[] row : data) {
+            maxZ = Math.max(maxZ, Integer.parseInt(row[Z_COLUMN]));
+            maxN = Math.max(maxN, Integer.parseInt(row[N_COLUMN]));
+        }
+
+        List<String> strings = new ArrayList<>();
+        HashMap<String, Integer> stringIndices = new HashMap<>();
+        int recordsOffset = HEADER_SIZE + (maxZ + 1) * (maxN + 1) * Integer.BYTES;
+        ByteBuffer records = ByteBuffer.allocate(rows * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        int[] index = new int[(maxZ + 1) * (maxN + 1)];
+        Arrays.fill(index, -1);
+
+        for (int i = 0; i < rows; i++) {
+            String[] row = data[i];
+            int record = i * RECORD_SIZE;
+            int Z = Integer.parseInt(row[Z_COLUMN]);
+            int N = Integer.parseInt(row[N_COLUMN]);
+            index[Z * (maxN + 1) + N] = i;
+
+            records.putShort(record + Z_OFFSET, (short) Z);
+            records.putShort(record + N_OFFSET, (short) N);
+            records.putShort(record + SYMBOL_OFFSET,
+                    (short) (int) stringIndices.computeIfAbsent(row[SYMBOL_COLUMN], s -> add(strings, s)));
+
+            int count = 0;
+            for (int column : DECAY_COLUMNS) {
+                String mode = row[column].strip();
+                if (!mode.isEmpty()) {
+                    int string = stringIndices.computeIfAbsent(mode, s -> add(strings, s));
+                    records.putShort(record + DECAY_OFFSET + count * Short.BYTES, (short) string);
+                    records.putDouble(record + DECAY_PERCENTAGE_OFFSET + count * Double.BYTES,
+                            parseValue(row[column + 1]));
+                    count++;
+                }
+            }
+            records.put(record + DECAY_COUNT_OFFSET, (byte) count);
+
+            for (int j = 0; j < VALUE_COLUMNS; j++)
+                records.putDouble(record + VALUE_OFFSET + j * Double.BYTES, parseValue(row[VALUE_CSV_COLUMNS[j]]));
+        }
+
+        int stringsSize = 0;
+        List<byte[]> encoded = new ArrayList<>();
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            stringsSize += Short.BYTES + bytes.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(recordsOffset + records.capacity() + stringsSize)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(csvSize).putLong(csvModified)
+                .putInt(rows).putInt(maxZ).putInt(maxN).putInt(strings.size());
+        for (int row : index)
+            buffer.putInt(row);
+        buffer.put(records);
+        for (byte[] bytes : encoded)
+            buffer.putShort((short) bytes.length).put(bytes);
+
+        return buffer.flip();
+    }
+
+    /**
+     * Parses a number from the .csv file
+     * @param str The entry in the .csv file
+     * @return Returns the number, or NaN if the entry is blank
+     */
+    private static double parseValue(String str) {
+        str = str.strip();
+        return str.isEmpty() ? Double.NaN : Double.parseDouble(str);
+    }
+
+    /**
+     * Appends a string to the string table
+     * @param strings The string table
+     * @param string The string to be added
+     * @return Returns the index of the string
+     */
+    private static int add(List<String> strings, String string) {
+        strings.add(string);
+        return strings.size() - 1;
+    }
+
+    /**
+     * Gets the number of nuclides in the table
+     * @return Returns the number of records
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Looks up the row of a nuclide
+     * @param Z Number of protons in nuclide
+     * @param N Number of neutrons in nuclide
+     * @return Returns the row of the nuclide, or -1 if it is not in the table
+     */
+    int getRow(int Z, int N) {
+        if (Z < 0 || Z > maxZ || N < 0 || N > maxN)
+            return -1;
+
+        return buffer.getInt(HEADER_SIZE + (Z * (maxN + 1) + N) * Integer.BYTES);
+    }
+
+    /**
+     * Gets the number of protons of a nuclide
+     * @param row Row of the nuclide
+     * @return Returns Z
+     */
+    int getZ(int row) {
+        return buffer.getShort(recordsOffset + row * RECORD_SIZE + Z_OFFSET);
+    }
+
+    /**
+     * Gets the number of neutrons of a nuclide
+     * @param row Row of the nuclide
+     * @return Returns N
+     */
+    int getN(int row) {
+        return buffer.getShort(recordsOffset + row * RECORD_SIZE + N_OFFSET);
+    }
+
+    /**
+     * Gets the element symbol of a nuclide
+     * @param row Row of the nuclide
+     * @return Returns the symbol, such as "He"
+     */
+    String getSymbol(int row) {
+        return strings[buffer.getShort(recordsOffset + row * RECORD_SIZE + SYMBOL_OFFSET)];
+    }
+
+    /**
+     * Gets the decay modes of a nuclide
+     * @param row Row of the nuclide
+     * @return Returns the decay modes in the order listed in the data, empty if it is stable
+     */
+    String[] getDecayModes(int row) {
+        int record = recordsOffset + row * RECORD_SIZE;
+        String[] modes = new String[buffer.get(record + DECAY_COUNT_OFFSET)];
+
+        for (int i = 0; i < modes.length; i++)
+            modes[i] = strings[buffer.getShort(record + DECAY_OFFSET + i * Short.BYTES)];
+
+        return modes;
+    }
+
+    /**
+     * Gets the percentage of decays of a nuclide that follow one of its decay modes
+     * @param row Row of the nuclide
+     * @param mode Index of the decay mode, in the order returned by getDecayModes
+     * @return Returns the percentage, or NaN if it is not given
+     */
+    double getDecayPercentage(int row, int mode) {
+        return buffer.getDouble(recordsOffset + row * RECORD_SIZE + DECAY_PERCENTAGE_OFFSET + mode * Double.BYTES);
+    }
+
+    /**
+     * Gets a value of a nuclide
+     * @param row Row of the nuclide
+     * @param column One of the value columns, such as MASS
+     * @return Returns the value, or NaN if it is missing
+     */
+    double getValue(int row, int column) {
+        return buffer.getDouble(recordsOffset + row * RECORD_SIZE + VALUE_OFFSET + column * Double.BYTES);
+    }
+}
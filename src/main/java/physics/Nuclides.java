@@ -1,17 +1,41 @@
 package physics;
 
-import java.io.File;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * Handles interactions with the saved Nuclide data
+ * Handles interactions with the saved Nuclide data.
+ * The data is read from a memory-mapped binary snapshot of the .csv file, kept in the user's cache directory, with a
+ * table from (Z, N) directly to the row of each nuclide. It is only opened once a lookup needs it. The quantities
+ * returned by lookups are built the first time they are needed and shared after that.
  */
 public class Nuclides {
-    private static String[][] data;
     private static final int DATA_SIZE = 3367;
     private static final String GROUND_STATE_PATH = "src/main/resources/nuclides/ground_states.csv";
+    // Where the snapshot is kept, under the user's cache directory
+    private static final String SNAPSHOT_DIRECTORY = "physics-calculator";
+    private static final String SNAPSHOT_NAME = "ground_states.bin";
+    // Symbol of the free neutron in the data
+    private static final String NEUTRON = "Nn";
+    // Most digits a mass number can have and still be read as an int
+    private static final int MAX_MASS_DIGITS = 9;
+
+    // Unit each value column is stored in. Binding energies are stored per nucleon
+    private static final String[] COLUMN_UNITS = {"keV", "keV", "uDa", "uDa", "s", "s"};
+
+    // Quantity for each value column of each row, at row * NuclideTable.VALUE_COLUMNS + column, or null where it has
+    // not been built yet
+    private static final AtomicReferenceArray<Quantity> quantities =
+            new AtomicReferenceArray<>(DATA_SIZE * NuclideTable.VALUE_COLUMNS);
+
+    /**
+     * Holds the nuclide data, so that it is only opened the first time a lookup needs it
+     */
+    private static class Data {
+        private static final NuclideTable TABLE = NuclideTable.open(Path.of(GROUND_STATE_PATH), getSnapshotPath(),
+                DATA_SIZE);
+    }
 
     /**
      * Returns a pair of integers that are the Z and A values of the given nuclide
@@ -19,28 +43,55 @@ public class Nuclides {
      * @return Returns an integer array where the first element is the Z value and the second is the A value
      */
     public static int[] parseNuclide(String str) {
-        int Z, A;
-        Pattern pattern = Pattern.compile("[0-9]+|[a-zA-Z]+");
-        Matcher matcher = pattern.matcher(str);
-
-        String a, b;
-        matcher.find();
-        a = matcher.group();
-        matcher.find();
-        b = matcher.group();
-
-        if (Character.isAlphabetic(a.charAt(0))) {
-            Z = getAtomicNumber(a);
-            A = Integer.parseInt(b);
-        }
-        else {
-            Z = getAtomicNumber(b);
-            A = Integer.parseInt(a);
+        int Z = -1, A = -1;
+        int i = 0;
+
+        // Read the first two runs of digits or letters, skipping anything between them
+        for (int part = 0; part < 2; part++) {
+            while (i < str.length() && !isDigit(str.charAt(i)) && !isLetter(str.charAt(i)))
+                i++;
+            if (i == str.length())
+                throw new RuntimeException("Unrecognized nuclide: " + str);
+
+            int start = i;
+            if (isDigit(str.charAt(i))) {
+                while (i < str.length() && isDigit(str.charAt(i)))
+                    i++;
+                // A second number, or one too long to be a mass number
+                if (A != -1 || i - start > MAX_MASS_DIGITS)
+                    throw new RuntimeException("Unrecognized nuclide: " + str);
+                A = Integer.parseInt(str, start, i, 10);
+            }
+            else {
+                while (i < str.length() && isLetter(str.charAt(i)))
+                    i++;
+                if (Z != -1)
+                    throw new RuntimeException("Unrecognized nuclide: " + str);
+                Z = getAtomicNumber(str.substring(start, i));
+            }
         }
 
         return new int[]{Z, A};
     }
 
+    /**
+     * Checks whether a character is part of the mass number of a nuclide
+     * @param c The character to be checked
+     * @return Returns true if c is an ASCII digit, false otherwise
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Checks whether a character is part of the element symbol of a nuclide
+     * @param c The character to be checked
+     * @return Returns true if c is an ASCII letter, false otherwise
+     */
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
     /**
      * Returns the ground state binding energy of a given nuclide
      * @param str String representation of nuclide
@@ -58,7 +109,17 @@ public class Nuclides {
      * @return Returns a Quantity that is the ground state binding energy of the given nuclide
      */
     public static Quantity getBindingEnergy(int Z, int A) {
-        return (new Quantity(getData(Z, A, 44) + "keV")).multiply(new Quantity(String.valueOf(A)));
+        return getData(Z, A, NuclideTable.BINDING_ENERGY);
+    }
+
+    /**
+     * Returns the uncertainty in the ground state binding energy of a given nuclide
+     * @param Z Number of protons in nuclide
+     * @param A Atomic number of nuclide
+     * @return Returns a Quantity that is the uncertainty in the binding energy of the given nuclide
+     */
+    public static Quantity getBindingEnergyUncertainty(int Z, int A) {
+        return getData(Z, A, NuclideTable.BINDING_ENERGY_UNCERTAINTY);
     }
 
     /**
@@ -79,7 +140,17 @@ public class Nuclides {
      */
     public static Quantity getMass(int Z, int A) {
         //stored in µamu
-        return new Quantity(getData(Z, A, 46) + "uDa");
+        return getData(Z, A, NuclideTable.MASS);
+    }
+
+    /**
+     * Returns the uncertainty in the mass of a given nuclide
+     * @param Z Number of protons in nuclide
+     * @param A Atomic number of nuclide
+     * @return Returns a Quantity that is the uncertainty in the mass of the given nuclide
+     */
+    public static Quantity getMassUncertainty(int Z, int A) {
+        return getData(Z, A, NuclideTable.MASS_UNCERTAINTY);
     }
 
     /**
@@ -99,81 +170,113 @@ public class Nuclides {
      * @return Returns a Quantity that is the half-life of the given nuclide
      */
     public static Quantity getHalfLife(int Z, int A) {
-        return new Quantity(getData(Z, A, 16) + "s");
+        return getData(Z, A, NuclideTable.HALF_LIFE);
+    }
+
+    /**
+     * Returns the uncertainty in the half-life of a given nuclide
+     * @param Z Number of protons in nuclide
+     * @param A Atomic number of nuclide
+     * @return Returns a Quantity that is the uncertainty in the half-life of the given nuclide
+     */
+    public static Quantity getHalfLifeUncertainty(int Z, int A) {
+        return getData(Z, A, NuclideTable.HALF_LIFE_UNCERTAINTY);
     }
 
     /**
-     * Finds the entry associate with Z and A in
-     * the data and returns the information in the specified column
+     * Returns the decay modes of a given nuclide, such as "B-" or "A"
      * @param Z Number of protons in nuclide
      * @param A Atomic number of nuclide
-     * @param column Index of column where requested information is stored
+     * @return Returns the decay modes of the given nuclide, in the order listed in the data. Empty if it is stable
+     */
+    public static String[] getDecayModes(int Z, int A) {
+        return getTable().getDecayModes(getRow(Z, A));
+    }
+
+    /**
+     * Finds the entry associated with Z and A in the given column as a quantity, building it if it is not cached
+     * @param Z Number of protons in nuclide
+     * @param A Atomic number of nuclide
+     * @param column Column where requested information is stored, such as NuclideTable.MASS
      * @return Returns information in specified column in row where Z and A match
      */
-    private static String getData(int Z, int A, int column) {
-        int i = searchData(Z, A);
+    private static Quantity getData(int Z, int A, int column) {
+        int row = getRow(Z, A);
+        int index = row * NuclideTable.VALUE_COLUMNS + column;
+        Quantity quantity = quantities.get(index);
 
-        if (i == -1)
-            throw new RuntimeException("Missing data on nuclide Z=" + Z + ", A=" + A);
+        if (quantity == null) {
+            double value = getTable().getValue(row, column);
+            if (Double.isNaN(value))
+                throw new RuntimeException("Missing data on nuclide Z=" + Z + ", A=" + A);
+
+            quantity = Quantity.valueOf(BigDecimal.valueOf(value), COLUMN_UNITS[column]);
+            if (column == NuclideTable.BINDING_ENERGY || column == NuclideTable.BINDING_ENERGY_UNCERTAINTY)
+                quantity = quantity.multiply(Quantity.valueOf(A));
+
+            quantities.set(index, quantity);
+        }
 
-        return data[i][column];
+        return quantity;
     }
 
     /**
-     * Searches the saved for an entry matching the arguments
-     * @param Z Proton number of target
-     * @param A Atomic number of target
-     * @return Returns the index of the target in the data, -1 if not found
+     * Starts a query over every nuclide in the data, such as Nuclides.query().protons(92).stream()
+     * @return Returns a query that matches every nuclide, to be narrowed down
      */
-    private static int searchData(int Z, int A) {
-        if (data == null)
-            loadData();
+    public static NuclideQuery query() {
+        return new NuclideQuery();
+    }
 
-        for (int i = 0; i < DATA_SIZE; i++) {
-            if (Integer.parseInt(data[i][0]) == Z && Integer.parseInt(data[i][1]) == A-Z) {
-                return i;
-            }
-        }
+    /**
+     * Gets the nuclide data
+     * @return Returns the table every lookup reads from
+     */
+    static NuclideTable getTable() {
+        return Data.TABLE;
+    }
+
+    /**
+     * Finds where the snapshot of the data is kept. This is the user's cache directory, as given by XDG_CACHE_HOME,
+     * or .cache in their home directory, rather than anywhere in the source tree
+     * @return Returns the path of the snapshot
+     */
+    private static Path getSnapshotPath() {
+        String cache = System.getenv("XDG_CACHE_HOME");
+        Path directory = cache == null || cache.isEmpty() ? Path.of(System.getProperty("user.home"), ".cache")
+                : Path.of(cache);
 
-        return -1;
+        return directory.resolve(SNAPSHOT_DIRECTORY).resolve(SNAPSHOT_NAME);
     }
 
     /**
-     * Loads data from .csv file
+     * Looks up the row of the nuclide matching the arguments
+     * @param Z Proton number of target
+     * @param A Atomic number of target
+     * @return Returns the index of the target in the data
      */
-    private static void loadData() {
-        data = new String[DATA_SIZE][];
-        Scanner scanner;
+    private static int getRow(int Z, int A) {
+        int row = getTable().getRow(Z, A - Z);
 
-        try {
-            scanner = new Scanner(new File(GROUND_STATE_PATH));
-        }
-        catch (Exception e) {
-            throw new RuntimeException("Missing or invalid file " + GROUND_STATE_PATH);
-        }
+        if (row == -1)
+            throw new RuntimeException("Missing data on nuclide Z=" + Z + ", A=" + A);
 
-        //Drop header
-        scanner.nextLine();
-        for (int i = 0; i < DATA_SIZE; i++) {
-            data[i] = scanner.nextLine().split(",");
-        }
+        return row;
     }
 
     /**
-     * Determines atomic number from element symbol. Not case-sensitive
-     * @param str Element symbol
+     * Determines atomic number from element symbol, using the symbols known to Chemistry. Case-sensitive
+     * @param str Element symbol, or "Nn" for the neutron
      * @return Returns the atomic number of the given element
      */
     public static int getAtomicNumber(String str) {
-        if (data == null)
-            loadData();
+        if (str.equals(NEUTRON))
+            return 0;
 
-        for (int i = 0; i < DATA_SIZE; i++) {
-            if (str.equals(data[i][2])) {
-                return Integer.parseInt(data[i][0]);
-            }
-        }
+        int Z = Chemistry.getAtomicNumber(str);
+        if (Z == -1)
+            throw new RuntimeException("Unrecognized element: " + str);
 
-        throw new RuntimeException("Unrecognized element: " + str);
+        return Z;
     }
-}
\ No newline at end of file
+}
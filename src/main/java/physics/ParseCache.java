@@ -0,0 +1,93 @@
+package physics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Remembers the Equations built from recently parsed strings, so that unchanged strings are not parsed again.
+ * Entries are keyed by the equation string and by the names of the variables it was parsed against, since the same
+ * string may parse differently once the set of variables changes. Only the names matter, so reassigning a variable,
+ * or removing one and defining it again, finds the same entries.
+ * The least recently used entry is evicted once the cache is full.
+ */
+public class ParseCache {
+    private final LinkedHashMap<Key, Equation> cache;
+    private long hits;
+    private long misses;
+
+    private record Key(String equation, Set<String> variables) { }
+
+    /**
+     * Creates an empty ParseCache
+     * @param capacity Maximum number of Equations to hold
+     */
+    public ParseCache(int capacity) {
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Equation> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the Equation for the given string, parsing it only if it is not already cached.
+     * Strings that fail to parse are not cached.
+     * @param equation The string to be parsed
+     * @param variables Names of the variables the string is parsed against
+     * @param parser Builds an Equation from the string
+     * @return Returns the Equation represented by the string
+     */
+    public synchronized Equation get(String equation, Set<String> variables, Function<String, Equation> parser) {
+        Equation result = cache.get(new Key(equation, variables));
+
+        if (result != null) {
+            hits++;
+            return result;
+        }
+
+        misses++;
+        result = parser.apply(equation);
+        // The names are copied, since the set given may change after this call
+        cache.put(new Key(equation, Set.copyOf(variables)), result);
+        return result;
+    }
+
+    /**
+     * Removes all Equations from the cache
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Gets the number of lookups that were answered from the cache
+     * @return Returns the number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that required the string to be parsed
+     * @return Returns the number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the fraction of lookups that were answered from the cache
+     * @return Returns the hit rate, or 0 if there have been no lookups
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized String toString() {
+        return "ParseCache{size=" + cache.size() + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+}
@@ -5,7 +5,6 @@ import tools.jackson.databind.ObjectMapper;
 
 import java.io.File;
 import java.util.*;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static physics.TokenType.*;
@@ -18,6 +17,15 @@ public class Parsing {
     public static final char IMPLICIT_D = 9995;
     public static final String[] OPERATORS = {"=", "+-", "*/", new String(new char[]{IMPLICIT_M, IMPLICIT_D}), "^"};
     private static final String[] LATEX_SYMBOLS;
+    private static final Pattern ASSIGNMENT;
+    private static final int LOOKUP_CACHE_SIZE = 256;
+    // Recently computed lookup functions, evicting the least recently used once full
+    private static final LinkedHashMap<String, Quantity> LOOKUPS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Quantity> eldest) {
+            return size() > LOOKUP_CACHE_SIZE;
+        }
+    };
 
     /**
      * Turns a string representing an equation into a series of tokens
@@ -25,51 +33,23 @@ public class Parsing {
      * @return Returns a list of tokens that represent the equation
      */
     public static List<Token> tokenizer(String equation, Set<String> variables) {
+        return tokenizer(equation, variables, new Lexer());
+    }
+
+    /**
+     * Turns a string representing an equation into a series of tokens.
+     * The Lexer is reused between calls, so that only the edited portion of the equation is scanned again.
+     * @param equation The equation to be converted
+     * @param lexer The Lexer that scanned the previous version of the equation
+     * @return Returns a list of tokens that represent the equation
+     */
+    public static List<Token> tokenizer(String equation, Set<String> variables, Lexer lexer) {
         ArrayList<Token> tokens = new ArrayList<>();
         Token token, prevToken;
         TokenType type, prevType, prevPrevType;
-        String tokenString;
-        int matchGroup;
-        int expectedStart = 0;
 
         equation = identifyAssignment(equation, tokens);
-        Matcher matcher = getMatcher(equation, variables);
-
-        // Read out tokens from equation
-        while (matcher.find()) {
-            tokenString = matcher.group();
-            matchGroup = matchedGroup(matcher);
-            type = identifyType(matchGroup, tokenString);
-
-            // Check for invalid token
-            if (expectedStart != matcher.start()) {
-                String unidentified = equation.substring(expectedStart, matcher.start());
-                catchUnidentifiedToken(unidentified);
-                expectedStart += unidentified.length();
-            }
-
-            // Replace with value as necessary
-            if (matchGroup == 4) {
-                // Regex won't catch expressions with nested brackets properly
-                // So we manually find our input string to the function
-                int index = findBracketPair(equation, matcher.start() + tokenString.indexOf('('));
-
-                tokenString = equation.substring(matcher.start(), index + 1);
-                matcher.region(index + 1, equation.length());
-
-                tokens.add(new Token(replaceFunction(tokenString)));
-            }
-            else
-                tokens.add(new Token(tokenString, type));
-
-            expectedStart += tokenString.length();
-        }
-
-        // Ended with unidentified token
-        if (expectedStart != equation.length()) {
-            tokenString = equation.substring(expectedStart);
-            catchUnidentifiedToken(tokenString);
-        }
+        tokens.addAll(lexer.lex(equation, variables));
 
         // Special rules at start of equation
         // Leading negation
@@ -124,31 +104,6 @@ public class Parsing {
         return tokens;
     }
 
-    /**
-     * Builds the Matcher that will tokenize an equation.
-     * @param equation The equation to build the matcher on.
-     * @param variables List of allowed variable strings in the equation
-     * @return Returns a Matcher that will tokenize the equation.
-     */
-    private static Matcher getMatcher(String equation, Set<String> variables) {
-        String group1 = "(\\d+\\.?\\d*(?:E[-+]?\\d+)?)|"; // Numbers
-        String group2 = "([()^+/*-])|"; // Operators
-        String group3 = "(sqrt|ln|log|exp|a?(?:sin|cos|tan|sec|csc|cot)h?)|"; // Functions
-        String group4 = "((?:con|M|BE|HL|MMass)\\([^)]+\\))|"; // Replacement functions
-
-        List<String> units = new ArrayList<>(Dimension.getSIUnitStrings());
-        units.set(units.indexOf("kg"), "g");
-        units.addAll(Units.getUnitStrings());
-        units.sort(Comparator.comparingInt(o -> -o.length()));
-
-        String group5 = "((?:[QRYZEPTGMkhadcmunpfzyrq]|da)?(?:" + String.join("|", units) + "))"; // Units
-        String group6 = variables.isEmpty() ? "" : "|(" + String.join("|", variables) + ")";
-        String joinedGroup = (group5 + group6).replaceAll("\\\\", "\\\\\\\\").replaceAll("\\{", "\\\\{");
-
-        Pattern pattern = Pattern.compile(group1 + group2 + group3 + group4 + joinedGroup);
-        return pattern.matcher(equation);
-    }
-
     /**
      * Checks whether there is an assignment operation in the equation, and extracts it
      * @param equation The equation to be considered.
@@ -163,12 +118,8 @@ public class Parsing {
             return equation;
 
         String variable = equation.substring(0, eqIndex).replaceAll("\\s+", "");
-        String validVariable = "[a-zA-Z]|\\\\" + String.join("|\\\\", LATEX_SYMBOLS);
-        String validSubscript = "(?:[0-9]|" + validVariable + "|\\{.+})";
-        Pattern pattern = Pattern.compile("(" + validVariable + ")(?:_" + validSubscript + ")?");
-        Matcher matcher = pattern.matcher(variable);
 
-        if (!matcher.matches()) {
+        if (!ASSIGNMENT.matcher(variable).matches()) {
             throw new RuntimeException("Invalid variable string: \"" + variable + "\"");
         }
 
@@ -177,26 +128,13 @@ public class Parsing {
         return equation.substring(eqIndex + 1);
     }
 
-    /**
-     * Checks whether the given unidentified token can be ignored.
-     * If it is a whitespace, nothing happens. Otherwise an error is thrown.
-     * @param token The token to be considered.
-     */
-    private static void catchUnidentifiedToken(String token) {
-        Pattern p = Pattern.compile("\\s+");
-        Matcher m = p.matcher(token);
-
-        if (!m.matches())
-            throw new RuntimeException("Unidentified token: \"" + token + "\"");
-    }
-
     /**
      * Given the index of a left bracket within a string, finds the index of its associated right bracket.
      * @param str String to be searched.
      * @param index Index at which left bracket is found.
      * @return Returns the index of the associated right bracket. Returns -1 if no such bracket exists in the string.
      */
-    private static int findBracketPair(String str, int index) {
+    static int findBracketPair(String str, int index) {
         int count = 1;
         int len = str.length();
         index++;
@@ -216,101 +154,113 @@ public class Parsing {
     }
 
     /**
-     * Identifies the group that matched the most recently matched token.
-     * Assumes that only one group matched.
-     * @param matcher The Matcher to check
-     * @return The first group id that matched on the previous token
+     * Computes the quantity corresponding to a given lookup function.
+     * Lookups never change, so recent results are remembered and shared by later calls with the same argument.
+     * Pop and Act are not remembered, since each time typed would take an entry; DecayChain already shares the chain
+     * they are computed from.
+     * @param str The function and argument, given as func(arg)
+     * @return Returns the corresponding quantity
      */
-    private static int matchedGroup(Matcher matcher) {
-        int groupCount = matcher.groupCount();
-
-        for (int i = 1; i <= groupCount; i++) {
-            if (matcher.start(i) != -1)
-                return i;
+    static Quantity replaceFunction(String str) {
+        if (str.startsWith("Pop(") || str.startsWith("Act("))
+            return lookup(str);
+
+        synchronized (LOOKUPS) {
+            Quantity cached = LOOKUPS.get(str);
+            if (cached != null)
+                return cached;
         }
 
-        return -1;
+        // Computed outside the lock, so that lookups from other threads are not held up by it
+        Quantity result = lookup(str);
+        synchronized (LOOKUPS) {
+            // Another thread may have computed it first, in which case its result is the one shared
+            LOOKUPS.putIfAbsent(str, result);
+            return LOOKUPS.get(str);
+        }
     }
 
     /**
-     * Computes the quantity corresponding to a given lookup function
+     * Computes the quantity corresponding to a given lookup function, without consulting the cache
      * @param str The function and argument, given as func(arg)
      * @return Returns the corresponding quantity
      */
-    private static Quantity replaceFunction(String str) {
-        if (str.contains("con(")) {
-            Quantity constant = Units.getConstant(str.substring(4, str.length() - 1));
-            if (constant == null)
-                throw new RuntimeException("Unrecognized constant " + str.substring(4, str.length() - 1));
+    private static Quantity lookup(String str) {
+        int bracket = str.indexOf('(');
+        String argument = str.substring(bracket + 1, str.length() - 1);
 
-            return constant;
-        }
-        else if (str.contains("M(")) {
-            return Nuclides.getMass(str.substring(2, str.length() - 1));
-        }
-        else if (str.contains("BE(")) {
-            return Nuclides.getBindingEnergy(str.substring(3, str.length() - 1));
-        }
-        else if (str.contains("HL(")) {
-            return Nuclides.getHalfLife(str.substring(3, str.length() - 1));
-        }
-        else if (str.contains("MMass(")) {
-            ChemicalFormula formula = new ChemicalFormula(parseChemicalFormula(str.substring(6, str.length() - 1)));
-            return formula.getMolarMass();
-        }
+        return switch (str.substring(0, bracket)) {
+            case "con" -> {
+                Quantity constant = Units.getConstant(argument);
+                if (constant == null)
+                    throw new RuntimeException("Unrecognized constant " + argument);
 
-        return null;
+                yield constant;
+            }
+            case "M" -> Nuclides.getMass(argument);
+            case "BE" -> Nuclides.getBindingEnergy(argument);
+            case "HL" -> Nuclides.getHalfLife(argument);
+            case "MMass" -> ChemicalFormula.parse(argument).getMolarMass();
+            case "Pop" -> decay(argument, false);
+            case "Act" -> decay(argument, true);
+            default -> throw new RuntimeException("Unrecognized function " + str.substring(0, bracket));
+        };
     }
 
     /**
-     * Identifies what type of token the given string is
-     * @param group The regex group that matched it
-     * @param str String to be identified
-     * @return Returns the TokenType of the argument
+     * Computes the population or activity of a member of a decay chain, per initial atom of its parent
+     * @param argument The parent, the member, and the time since the start, separated by commas, as in 238U,234Th,1h
+     * @param activity True for the activity of the member, false for the number of atoms
+     * @return Returns the corresponding quantity
      */
-    private static TokenType identifyType(int group, String str) {
-        return switch (group) {
-            case 1,4 -> NUMBER;
-            case 2 -> switch (str.charAt(0)) {
-                case '(' -> LBRACKET;
-                case ')' -> RBRACKET;
-                default -> OPERATOR;
-            };
-            case 3 -> FUNCTION;
-            case 5 -> UNIT;
-            case 6 -> VARIABLE;
-            default -> null;
-        };
+    private static Quantity decay(String argument, boolean activity) {
+        String[] parts = argument.split(",");
+        if (parts.length != 3)
+            throw new RuntimeException("Expected parent, daughter, and time in " + argument);
+
+        DecayChain chain = DecayChain.of(parts[0].strip());
+        int[] daughter = Nuclides.parseNuclide(parts[1]);
+        Quantity time = new Quantity(parts[2].replace(" ", ""));
+
+        return activity ? chain.getActivity(daughter[0], daughter[1], time)
+                : chain.getPopulation(daughter[0], daughter[1], time);
     }
 
     /**
-     * Parses a string that represents a chemical formula into a series of tokens. Assumes that the formula is valid
-     * and contains only numbers, elements, and brackets.
+     * Parses a string that represents a chemical formula into a series of tokens. Assumes that the formula
+     * contains only numbers, elements, and brackets. Element symbols are matched case-sensitively, preferring
+     * two letter symbols over one letter symbols.
      * @param formula String that represents the formula
      * @return Returns a list of ChemicalTokens, the formula having been broken into numbers, elements, and brackets.
      */
     public static List<ChemicalToken> parseChemicalFormula(String formula) {
-        String elements = String.join("|", Chemistry.getElementStrings());
-        Pattern pattern = Pattern.compile("(\\d+)|(\\()|(\\))|(" + elements + ")");
-        Matcher matcher = pattern.matcher(formula);
-        String token;
-        TokenType type;
-        int matchedGroup;
         List<ChemicalToken> output = new ArrayList<>();
+        int length = formula.length();
+        int i = 0;
 
-        while (matcher.find()) {
-            token = matcher.group();
-            matchedGroup = matchedGroup(matcher);
+        while (i < length) {
+            char c = formula.charAt(i);
+            int end = i + 1;
 
-            type = switch(matchedGroup) {
-                case 1 -> NUMBER;
-                case 2 -> LBRACKET;
-                case 3 -> RBRACKET;
-                case 4 -> CHEMICAL;
-                default -> throw new IllegalStateException("Unexpected value: " + matchedGroup);
-            };
+            if (Character.isDigit(c)) {
+                while (end < length && Character.isDigit(formula.charAt(end)))
+                    end++;
+                output.add(new ChemicalToken(formula.substring(i, end), NUMBER));
+            }
+            else if (c == '(')
+                output.add(new ChemicalToken("(", LBRACKET));
+            else if (c == ')')
+                output.add(new ChemicalToken(")", RBRACKET));
+            else if (Character.isUpperCase(c)) {
+                if (end < length && Character.isLowerCase(formula.charAt(end))
+                        && Chemistry.getAtomicNumber(formula.substring(i, end + 1)) != -1)
+                    end++;
+                output.add(new ChemicalToken(formula.substring(i, end), CHEMICAL));
+            }
+            else if (!Character.isWhitespace(c))
+                throw new RuntimeException("Unrecognized character in chemical formula: \"" + c + "\"");
 
-            output.add(new ChemicalToken(token, type));
+            i = end;
         }
 
         return output;
@@ -320,5 +270,9 @@ public class Parsing {
         ObjectMapper mapper = new ObjectMapper();
         File file = new File("src/main/resources/data/latex_symbols.json");
         LATEX_SYMBOLS = mapper.readValue(file, new TypeReference<>() {});
+
+        String validVariable = "[a-zA-Z]|\\\\" + String.join("|\\\\", LATEX_SYMBOLS);
+        String validSubscript = "(?:[0-9]|" + validVariable + "|\\{.+})";
+        ASSIGNMENT = Pattern.compile("(" + validVariable + ")(?:_" + validSubscript + ")?");
     }
 }
\ No newline at end of file
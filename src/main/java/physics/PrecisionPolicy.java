@@ -0,0 +1,75 @@
+package physics;
+
+import java.math.MathContext;
+
+/**
+ * Chooses the working precision for results that are only displayed to a given number of significant figures.
+ * Evaluation starts at the requested significant figures plus a number of guard digits, and the precision is doubled
+ * each time the result is not stable to the requested digits, until it would reach the full precision of a Quantity.
+ */
+public class PrecisionPolicy {
+    public static final PrecisionPolicy DEFAULT = new PrecisionPolicy(true, 5);
+
+    private final boolean doubles;
+    private final int guardDigits;
+
+    /**
+     * Creates a PrecisionPolicy
+     * @param doubles Whether to try evaluating with doubles before any BigDecimal precision
+     * @param guardDigits Number of digits beyond the requested significant figures to start with
+     */
+    public PrecisionPolicy(boolean doubles, int guardDigits) {
+        if (guardDigits < 0)
+            throw new RuntimeException("Cannot have a negative number of guard digits.");
+
+        this.doubles = doubles;
+        this.guardDigits = guardDigits;
+    }
+
+    /**
+     * Checks whether doubles should be tried first
+     * @return Returns true if doubles are allowed, false otherwise
+     */
+    public boolean allowsDoubles() {
+        return doubles;
+    }
+
+    /**
+     * Gets the number of guard digits
+     * @return Returns the number of digits beyond the requested significant figures to start with
+     */
+    public int getGuardDigits() {
+        return guardDigits;
+    }
+
+    /**
+     * Gives the precision to start at
+     * @param sigFigs Number of significant figures the result will be displayed with
+     * @return Returns the starting precision, or null if it is no less than the full precision
+     */
+    public MathContext getInitialContext(int sigFigs) {
+        return context(Math.max(sigFigs, 1) + guardDigits);
+    }
+
+    /**
+     * Gives the next precision to try after a result was not stable
+     * @param mc The precision that was not enough
+     * @return Returns a wider precision, or null if it would be no less than the full precision
+     */
+    public MathContext widen(MathContext mc) {
+        return context(2 * mc.getPrecision());
+    }
+
+    /**
+     * Creates a MathContext with the given precision, if it is below the full precision of a Quantity
+     * @param precision Number of digits
+     * @return Returns the MathContext, or null if the full precision should be used instead
+     */
+    private static MathContext context(int precision) {
+        return precision >= Quantity.MC.getPrecision() ? null : new MathContext(precision, Quantity.RM);
+    }
+
+    public String toString() {
+        return "PrecisionPolicy{doubles=" + doubles + ", guardDigits=" + guardDigits + "}";
+    }
+}
@@ -0,0 +1,874 @@
+package physics;
+
+import collections.BinaryTreeNode;
+import physics.exceptions.IncompatibleUnitsException;
+import physics.exceptions.InvalidDimensionException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.*;
+import java.util.function.Function;
+
+import static physics.Quantity.MC;
+import static physics.Quantity.SCALE;
+
+/**
+ * A flat, postfix form of an Equation that can be evaluated without walking its tree.
+ * Instructions are stored in a single int array, alongside a pool of constants and a table of variable slots.
+ * Evaluation runs through the instructions once with an explicit operand stack, so it never recurses.
+ * The dimensions of the result are inferred separately from its value. Once they have been checked for the dimensions
+ * of the current variables, evaluation works on bare numbers and does no further work with dimensions.
+ */
+public class Program {
+    // Opcodes. CONST, VAR, and FUNC are followed by an operand.
+    static final int CONST = 0;
+    static final int VAR = 1;
+    static final int ADD = 2;
+    static final int SUBTRACT = 3;
+    static final int MULTIPLY = 4;
+    static final int DIVIDE = 5;
+    static final int POW = 6;
+    static final int FUNC = 7;
+
+    static final String[] FUNCTIONS = {"sqrt", "ln", "log", "exp", "sin", "cos", "tan", "asin", "acos", "atan",
+            "sinh", "cosh", "tanh", "asinh", "acosh", "atanh"};
+
+    // Number of evaluations after which a program is compiled to bytecode, or negative to never compile
+    private static volatile int generationThreshold = 1000;
+    private static volatile PrecisionPolicy precisionPolicy = PrecisionPolicy.DEFAULT;
+    // Whether values are kept as exact fractions through arithmetic
+    private static volatile boolean exactArithmetic = false;
+    // Largest integer exponent for which powers are kept exact
+    private static final int MAX_EXACT_EXPONENT = 64;
+
+    private final int[] code;
+    private final Quantity[] constants;
+    // Numeric value of each constant, or null if some constant has no single numeric value
+    private final BigDecimal[] values;
+    private final double[] doubles;
+    // Exact value of each constant, or null if some constant has no single numeric value
+    private final Rational[] rationals;
+    private final String[] variables;
+    private final int maxStack;
+
+    private volatile Check check;
+    private int evaluations;
+    private volatile Compiled compiled;
+    private volatile boolean generationFailed;
+
+    /**
+     * The outcome of checking the dimensions of the program
+     * @param variables Dimensions of the variables that were checked
+     * @param result Dimensions of the result, or null if they depend on the values of the variables
+     */
+    private record Check(Dimension[] variables, Dimension result) {
+        /**
+         * Checks whether this outcome holds for the given variable values
+         * @param slots Value of each variable
+         * @return Returns true if every variable has the dimensions that were checked, false otherwise
+         */
+        boolean matches(Quantity[] slots) {
+            for (int i = 0; i < slots.length; i++) {
+                Dimension dimension = slots[i].getDimension();
+                if (dimension != variables[i])
+                    return false;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Evaluates the values of a Program through generated bytecode
+     */
+    interface Compiled {
+        /**
+         * Evaluates the program with the given variable values
+         * @param slots Numeric value of each variable, indexed by slot
+         * @return Returns the numeric value of the result of the program
+         */
+        BigDecimal evaluate(BigDecimal[] slots);
+    }
+
+    /**
+     * Creates a Program from its parts
+     * @param code Instructions of the program
+     * @param constants Constants referred to by CONST instructions
+     * @param rationals Exact value of each constant, or null where it has no single numeric value
+     * @param variables Names of the variables referred to by VAR instructions
+     * @param maxStack Greatest number of operands on the stack at once
+     */
+    private Program(int[] code, Quantity[] constants, Rational[] rationals, String[] variables, int maxStack) {
+        this.code = code;
+        this.constants = constants;
+        this.rationals = Arrays.asList(rationals).contains(null) ? null : rationals;
+        this.variables = variables;
+        this.maxStack = maxStack;
+
+        BigDecimal[] values = new BigDecimal[constants.length];
+        for (int i = 0; i < constants.length && values != null; i++) {
+            values[i] = constants[i].getNumericValue();
+            if (values[i] == null)
+                values = null;
+        }
+        this.values = values;
+        doubles = values == null ? null : toDoubles(values);
+    }
+
+    /**
+     * Compiles an expression tree into a Program.
+     * Any operation whose operands are all constants is computed immediately and stored as a single constant.
+     * Operations that fail are kept, so that the error is reported on evaluation, unless their dimensions conflict.
+     * @param root Root of the expression tree
+     * @return Returns the compiled Program
+     * @throws IncompatibleUnitsException If quantities of differing dimensions are added or subtracted
+     * @throws InvalidDimensionException If an operation is given a quantity of dimensions it cannot accept
+     */
+    public static Program compile(BinaryTreeNode<Token> root) {
+        IntList code = new IntList();
+        List<Quantity> constants = new ArrayList<>();
+        // Exact value of each constant, so that folding does not round values kept exact
+        List<Rational> rationals = new ArrayList<>();
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        // Whether each operand currently on the stack is a constant
+        Deque<Boolean> operands = new ArrayDeque<>();
+        int maxStack = 0;
+
+        // Iterative post-order traversal, where a node is emitted once both of its children have been
+        Deque<BinaryTreeNode<Token>> nodes = new ArrayDeque<>();
+        Deque<Boolean> visited = new ArrayDeque<>();
+        nodes.push(root);
+        visited.push(false);
+
+        while (!nodes.isEmpty()) {
+            BinaryTreeNode<Token> node = nodes.pop();
+            Token token = node.getElement();
+
+            if (!visited.pop() && (token.isOperator() || token.isFunction())) {
+                nodes.push(node);
+                visited.push(true);
+
+                if (node.getRight() != null) {
+                    nodes.push(node.getRight());
+                    visited.push(false);
+                }
+                nodes.push(node.getLeft());
+                visited.push(false);
+                continue;
+            }
+
+            if (token.isOperator() || token.isFunction()) {
+                int opcode = token.isOperator() ? opcode(token.getOperator()) : FUNC;
+                int function = token.isFunction() ? function(token.getFunction()) : -1;
+                int arity = token.isOperator() ? 2 : 1;
+
+                if (operands.peek() && (arity == 1 || operands.stream().skip(1).findFirst().orElse(false))) {
+                    Quantity right = arity == 2 ? constants.get(constants.size() - 1) : null;
+                    Quantity left = constants.get(constants.size() - arity);
+
+                    try {
+                        Quantity value = arity == 2 ? operate(opcode, left, right) : apply(function, left);
+                        Rational exact = arity == 2 ? fold(opcode, rationals.get(rationals.size() - 2),
+                                rationals.get(rationals.size() - 1), value) : exact(value);
+
+                        // The operands were the last constants emitted, so replace them with their result
+                        for (int i = 0; i < arity; i++) {
+                            code.truncate(code.size() - 2);
+                            constants.remove(constants.size() - 1);
+                            rationals.remove(rationals.size() - 1);
+                            operands.pop();
+                        }
+                        code.add(CONST);
+                        code.add(constants.size());
+                        constants.add(value);
+                        rationals.add(exact);
+                        operands.push(true);
+                        continue;
+                    }
+                    catch (RuntimeException ignored) {}
+                }
+
+                code.add(opcode);
+                if (opcode == FUNC)
+                    code.add(function);
+
+                for (int i = 0; i < arity; i++)
+                    operands.pop();
+                operands.push(false);
+            }
+            else if (token.isVariable()) {
+                code.add(VAR);
+                code.add(slots.computeIfAbsent(token.getVariable(), k -> slots.size()));
+                operands.push(false);
+            }
+            else {
+                code.add(CONST);
+                code.add(constants.size());
+                constants.add(token.getValue());
+                rationals.add(exact(token.getValue()));
+                operands.push(true);
+            }
+
+            maxStack = Math.max(maxStack, operands.size());
+        }
+
+        Program program = new Program(code.toArray(), constants.toArray(new Quantity[0]),
+                rationals.toArray(new Rational[0]), slots.keySet().toArray(new String[0]), maxStack);
+        // Report conflicts that do not depend on the variables
+        program.infer(new Dimension[slots.size()], false);
+        return program;
+    }
+
+    /**
+     * Evaluates the program, looking up the current value of each variable
+     * @param values Gives the value of each variable by name
+     * @return Returns the result of the program
+     */
+    public Quantity run(Function<String, Quantity> values) {
+        return run(resolve(values));
+    }
+
+    /**
+     * Evaluates the program to at least the given number of significant figures, looking up the current value of
+     * each variable
+     * @param values Gives the value of each variable by name
+     * @param sigFigs Number of significant figures the result will be displayed with
+     * @return Returns the result of the program, along with a bound on its error
+     */
+    public Approximation approximate(Function<String, Quantity> values, int sigFigs) {
+        return approximate(resolve(values), sigFigs);
+    }
+
+    /**
+     * Looks up the current value of each variable
+     * @param values Gives the value of each variable by name
+     * @return Returns the value of each variable, indexed by slot
+     */
+    private Quantity[] resolve(Function<String, Quantity> values) {
+        Quantity[] slots = new Quantity[variables.length];
+
+        for (int i = 0; i < variables.length; i++) {
+            slots[i] = values.apply(variables[i]);
+
+            if (slots[i] == null)
+                throw new RuntimeException("Variable \"" + variables[i] + "\" is undefined.");
+        }
+
+        return slots;
+    }
+
+    /**
+     * Evaluates the program with the given variable values
+     * @param slots Value of each variable, in the order given by getVariables
+     * @return Returns the result of the program
+     */
+    public Quantity run(Quantity[] slots) {
+        // A lone constant or variable is returned as it is, keeping its units
+        if (values != null && code.length > 2) {
+            Dimension dimension = check(slots).result;
+
+            if (dimension != null) {
+                BigDecimal[] numericSlots = toNumeric(slots);
+
+                if (numericSlots != null && exactArithmetic && rationals != null)
+                    return new Quantity(evaluateExactly(numericSlots), dimension);
+                if (numericSlots != null)
+                    return new Quantity(evaluate(numericSlots), dimension);
+            }
+        }
+
+        return interpret(slots);
+    }
+
+    /**
+     * Evaluates the program to at least the given number of significant figures.
+     * The working precision is chosen by the precision policy, starting with doubles if allowed, and is only widened
+     * when the error of the result is too large to be sure of the displayed digits. If no reduced precision is enough,
+     * the result is computed in full.
+     * @param slots Value of each variable, in the order given by getVariables
+     * @param sigFigs Number of significant figures the result will be displayed with
+     * @return Returns the result of the program, along with a bound on its error
+     */
+    public Approximation approximate(Quantity[] slots, int sigFigs) {
+        PrecisionPolicy policy = precisionPolicy;
+
+        if (values != null && code.length > 2) {
+            Dimension dimension = check(slots).result;
+            BigDecimal[] numericSlots = dimension == null ? null : toNumeric(slots);
+
+            if (numericSlots != null) {
+                double[] slotDoubles = toDoubles(numericSlots);
+                MathContext mc = policy.allowsDoubles() ? null : policy.getInitialContext(sigFigs);
+
+                do {
+                    BoundedEvaluator evaluator = new BoundedEvaluator(maxStack, mc);
+                    BigDecimal value = evaluator.evaluate(code, values, doubles, numericSlots, slotDoubles, sigFigs);
+
+                    if (value != null)
+                        return new Approximation(new Quantity(value, dimension), evaluator.getError());
+
+                    mc = mc == null ? policy.getInitialContext(sigFigs) : policy.widen(mc);
+                } while (mc != null);
+            }
+        }
+
+        return new Approximation(run(slots), 0);
+    }
+
+    /**
+     * Gets the numeric value of each variable
+     * @param slots Value of each variable
+     * @return Returns the numeric value of each variable, or null if some variable has no single numeric value
+     */
+    private static BigDecimal[] toNumeric(Quantity[] slots) {
+        BigDecimal[] numericSlots = new BigDecimal[slots.length];
+
+        for (int i = 0; i < slots.length; i++) {
+            numericSlots[i] = slots[i].getNumericValue();
+            if (numericSlots[i] == null)
+                return null;
+        }
+
+        return numericSlots;
+    }
+
+    /**
+     * Converts values to doubles
+     * @param values The values to be converted
+     * @return Returns the nearest double to each value, or NaN where a nonzero value becomes zero
+     */
+    private static double[] toDoubles(BigDecimal[] values) {
+        double[] doubles = new double[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            doubles[i] = values[i].doubleValue();
+            if (doubles[i] == 0 && values[i].signum() != 0)
+                doubles[i] = Double.NaN;
+        }
+
+        return doubles;
+    }
+
+    /**
+     * Checks the dimensions of the program for the dimensions of the given variables, reusing the last check if the
+     * dimensions have not changed
+     * @param slots Value of each variable
+     * @return Returns the outcome of the check
+     */
+    private Check check(Quantity[] slots) {
+        Check check = this.check;
+
+        if (check == null || !check.matches(slots)) {
+            Dimension[] dimensions = new Dimension[slots.length];
+            for (int i = 0; i < slots.length; i++)
+                dimensions[i] = slots[i].getDimension();
+
+            check = new Check(dimensions, infer(dimensions, true));
+            this.check = check;
+        }
+
+        return check;
+    }
+
+    /**
+     * Infers the dimensions of the result of the program
+     * @param variables Dimensions of each variable, or null where they are unknown
+     * @param strict If true, stops as soon as a dimension depends on a value rather than treating it as unknown
+     * @return Returns the dimensions of the result, or null if they are unknown
+     * @throws IncompatibleUnitsException If quantities of differing dimensions are added or subtracted
+     * @throws InvalidDimensionException If an operation is given a quantity of dimensions it cannot accept
+     */
+    private Dimension infer(Dimension[] variables, boolean strict) {
+        Dimension[] stack = new Dimension[maxStack];
+        // Index in the constant pool of each entry of the stack that is a constant, or -1
+        int[] constantStack = new int[maxStack];
+        int top = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            int operation = code[pc];
+
+            switch (operation) {
+                case CONST -> {
+                    constantStack[top] = code[++pc];
+                    stack[top++] = constants[constantStack[top - 1]].getDimension();
+                }
+                case VAR -> stack[top++] = variables[code[++pc]];
+                case FUNC -> {
+                    Dimension x = stack[top - 1];
+
+                    if (FUNCTIONS[code[++pc]].equals("sqrt"))
+                        stack[top - 1] = x == null ? null : x.divide(2);
+                    else if (x == null || x.isDimensionless())
+                        stack[top - 1] = Dimension.DIMENSIONLESS;
+                    else
+                        throw new InvalidDimensionException();
+                }
+                case ADD, SUBTRACT -> {
+                    Dimension right = stack[--top];
+                    Dimension left = stack[top - 1];
+
+                    if (left != null && right != null && !left.equals(right))
+                        throw new IncompatibleUnitsException(left.toString(), right.toString());
+                    if (left == null)
+                        stack[top - 1] = right;
+                }
+                case MULTIPLY, DIVIDE -> {
+                    Dimension right = stack[--top];
+                    Dimension left = stack[top - 1];
+
+                    if (left == null || right == null)
+                        stack[top - 1] = null;
+                    else
+                        stack[top - 1] = code[pc] == MULTIPLY ? left.add(right) : left.subtract(right);
+                }
+                case POW -> {
+                    int exponent = constantStack[top - 1];
+                    Dimension right = stack[--top];
+                    Dimension left = stack[top - 1];
+
+                    if (right != null && !right.isDimensionless())
+                        throw new InvalidDimensionException();
+
+                    if (left != null && !left.isDimensionless()) {
+                        // The dimensions of a power of a dimensioned base depend on the value of the exponent
+                        if (exponent != -1)
+                            stack[top - 1] = Quantity.powDimension(left, constants[exponent]);
+                        else if (strict)
+                            return null;
+                        else
+                            stack[top - 1] = null;
+                    }
+                }
+            }
+
+            // The result of any other operation is not a constant
+            if (operation != CONST)
+                constantStack[top - 1] = -1;
+        }
+
+        return stack[0];
+    }
+
+    /**
+     * Evaluates the numeric value of the program.
+     * Once the program has been evaluated often enough, it is compiled to bytecode and evaluated through that instead.
+     * @param slots Numeric value of each variable
+     * @return Returns the numeric value of the result
+     */
+    private BigDecimal evaluate(BigDecimal[] slots) {
+        Compiled compiled = this.compiled;
+
+        if (compiled == null && !generationFailed) {
+            int threshold = generationThreshold;
+            if (threshold >= 0 && ++evaluations > threshold)
+                compiled = generate();
+        }
+
+        if (compiled != null) {
+            try {
+                return compiled.evaluate(slots);
+            }
+            catch (LinkageError e) {
+                this.compiled = null;
+                generationFailed = true;
+            }
+        }
+
+        return interpret(slots);
+    }
+
+    /**
+     * Evaluates the numeric value of the program with exact fractions.
+     * Values are only rounded where a function or a power with a non-integer exponent is applied, and once more at
+     * the end if the result has no terminating decimal expansion.
+     * @param slots Numeric value of each variable
+     * @return Returns the numeric value of the result
+     */
+    private BigDecimal evaluateExactly(BigDecimal[] slots) {
+        Rational[] stack = new Rational[maxStack];
+        int top = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONST -> stack[top++] = rationals[code[++pc]];
+                case VAR -> stack[top++] = Rational.valueOf(slots[code[++pc]]);
+                case FUNC -> stack[top - 1] = Rational.valueOf(apply(code[++pc], stack[top - 1].toBigDecimal(MC)));
+                default -> {
+                    top--;
+                    stack[top - 1] = operate(code[pc], stack[top - 1], stack[top]);
+                }
+            }
+        }
+
+        BigDecimal result = stack[0].toBigDecimal(MC);
+        // Keep at least the scale of a parsed value, since division keeps the scale of the dividend
+        return result.scale() < SCALE ? result.setScale(SCALE) : result;
+    }
+
+    /**
+     * Evaluates the numeric value of the program by interpreting its instructions
+     * @param slots Numeric value of each variable
+     * @return Returns the numeric value of the result
+     */
+    BigDecimal interpret(BigDecimal[] slots) {
+        BigDecimal[] stack = new BigDecimal[maxStack];
+        int top = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONST -> stack[top++] = values[code[++pc]];
+                case VAR -> stack[top++] = slots[code[++pc]];
+                case FUNC -> stack[top - 1] = apply(code[++pc], stack[top - 1]);
+                default -> {
+                    top--;
+                    stack[top - 1] = operate(code[pc], stack[top - 1], stack[top]);
+                }
+            }
+        }
+
+        return stack[0];
+    }
+
+    /**
+     * Evaluates the program by interpreting its instructions, working out dimensions along with values
+     * @param slots Value of each variable, in the order given by getVariables
+     * @return Returns the result of the program
+     */
+    Quantity interpret(Quantity[] slots) {
+        Quantity[] stack = new Quantity[maxStack];
+        int top = 0;
+
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONST -> stack[top++] = constants[code[++pc]];
+                case VAR -> stack[top++] = slots[code[++pc]];
+                case FUNC -> stack[top - 1] = apply(code[++pc], stack[top - 1]);
+                default -> {
+                    top--;
+                    stack[top - 1] = operate(code[pc], stack[top - 1], stack[top]);
+                }
+            }
+        }
+
+        return stack[0];
+    }
+
+    /**
+     * Compiles the program to bytecode, unless another thread has already done so
+     * @return Returns the compiled program, or null if it could not be compiled
+     */
+    private synchronized Compiled generate() {
+        if (compiled == null && !generationFailed) {
+            try {
+                compiled = ProgramGenerator.generate(code, values, maxStack);
+            }
+            catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                generationFailed = true;
+            }
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Sets how many times a program is evaluated before it is compiled to bytecode
+     * @param threshold Number of evaluations, or a negative number to never compile programs
+     */
+    public static void setGenerationThreshold(int threshold) {
+        generationThreshold = threshold;
+    }
+
+    /**
+     * Sets the policy that chooses the working precision of approximate evaluations
+     * @param policy The policy to be used
+     */
+    public static void setPrecisionPolicy(PrecisionPolicy policy) {
+        precisionPolicy = policy;
+    }
+
+    /**
+     * Sets the cache that remembers the results of functions, for every evaluation
+     * @param cache The cache to be used, or null to compute every function
+     */
+    public static void setFunctionCache(FunctionCache cache) {
+        Arithmetic.setFunctionCache(cache);
+    }
+
+    /**
+     * Sets whether programs keep values as exact fractions through addition, subtraction, multiplication, division
+     * and integer powers, rather than rounding each result
+     * @param exact True to evaluate exactly, false to round each operation
+     */
+    public static void setExactArithmetic(boolean exact) {
+        exactArithmetic = exact;
+    }
+
+    /**
+     * Checks whether this program is being evaluated through generated bytecode
+     * @return Returns true if the program has been compiled, false otherwise
+     */
+    public boolean isGenerated() {
+        return compiled != null;
+    }
+
+    /**
+     * Gets the names of the variables used by this program
+     * @return Returns the variable names, indexed by slot
+     */
+    public String[] getVariables() {
+        return variables.clone();
+    }
+
+    /**
+     * Computes the result of a given operation
+     * @param opcode The operation to perform
+     * @param left The left operand
+     * @param right The right operand
+     * @return Returns the result of the operation
+     */
+    static Quantity operate(int opcode, Quantity left, Quantity right) {
+        return switch (opcode) {
+            case ADD -> left.add(right);
+            case SUBTRACT -> left.subtract(right);
+            case MULTIPLY -> left.multiply(right);
+            case DIVIDE -> left.divide(right);
+            case POW -> left.pow(right);
+            default -> throw new IllegalStateException("Unexpected value: " + opcode);
+        };
+    }
+
+    /**
+     * Computes the result of a given function
+     * @param function Index of the function in FUNCTIONS
+     * @param x argument of the function
+     * @return Returns f(x)
+     */
+    static Quantity apply(int function, Quantity x) {
+        return switch (FUNCTIONS[function]) {
+            case "sqrt" -> Quantity.sqrt(x);
+            case "ln" -> Quantity.ln(x);
+            case "log" -> Quantity.log(x);
+            case "exp" -> Quantity.exp(x);
+            case "sin" -> Quantity.sin(x);
+            case "cos" -> Quantity.cos(x);
+            case "tan" -> Quantity.tan(x);
+            case "asin" -> Quantity.asin(x);
+            case "acos" -> Quantity.acos(x);
+            case "atan" -> Quantity.atan(x);
+            case "sinh" -> Quantity.sinh(x);
+            case "cosh" -> Quantity.cosh(x);
+            case "tanh" -> Quantity.tanh(x);
+            case "asinh" -> Quantity.asinh(x);
+            case "acosh" -> Quantity.acosh(x);
+            case "atanh" -> Quantity.atanh(x);
+            default -> throw new IllegalStateException("Unexpected value: " + FUNCTIONS[function]);
+        };
+    }
+
+    /**
+     * Performs a binary operation on exact values
+     * @param opcode The operation to perform
+     * @param left The left operand
+     * @param right The right operand
+     * @return Returns the result, rounded only for powers that are not small integers
+     */
+    static Rational operate(int opcode, Rational left, Rational right) {
+        return switch (opcode) {
+            case ADD -> left.add(right);
+            case SUBTRACT -> left.subtract(right);
+            case MULTIPLY -> left.multiply(right);
+            case DIVIDE -> left.divide(right);
+            case POW -> {
+                if (right.isInteger() && right.getNumerator().abs().compareTo(BigInteger.valueOf(MAX_EXACT_EXPONENT)) <= 0)
+                    yield left.pow(right.getNumerator().intValue());
+
+                yield Rational.valueOf(Arithmetic.pow(left.toBigDecimal(MC), right.toBigDecimal(MC)));
+            }
+            default -> throw new IllegalStateException("Unexpected value: " + opcode);
+        };
+    }
+
+    /**
+     * Finds the exact value of a folded constant
+     * @param opcode The operation that was folded
+     * @param left Exact value of the left operand, or null if it has none
+     * @param right Exact value of the right operand, or null if it has none
+     * @param value The folded constant
+     * @return Returns the exact result of the operation, or the value of the constant if the operands were not exact
+     */
+    private static Rational fold(int opcode, Rational left, Rational right, Quantity value) {
+        if (left == null || right == null || value.getNumericValue() == null)
+            return exact(value);
+
+        return operate(opcode, left, right);
+    }
+
+    /**
+     * Gives the exact value of a constant
+     * @param value The constant
+     * @return Returns the numeric value of the constant as a Rational, or null if it has no single numeric value
+     */
+    private static Rational exact(Quantity value) {
+        BigDecimal numeric = value.getNumericValue();
+        return numeric == null ? null : Rational.valueOf(numeric);
+    }
+
+    /**
+     * Computes the numeric result of a given operation
+     * @param opcode The operation to perform
+     * @param left The left operand
+     * @param right The right operand
+     * @return Returns the result of the operation
+     */
+    static BigDecimal operate(int opcode, BigDecimal left, BigDecimal right) {
+        return switch (opcode) {
+            case ADD -> Arithmetic.add(left, right);
+            case SUBTRACT -> Arithmetic.subtract(left, right);
+            case MULTIPLY -> Arithmetic.multiply(left, right);
+            case DIVIDE -> Arithmetic.divide(left, right);
+            case POW -> Arithmetic.pow(left, right);
+            default -> throw new IllegalStateException("Unexpected value: " + opcode);
+        };
+    }
+
+    /**
+     * Computes the numeric result of a given function
+     * @param function Index of the function in FUNCTIONS
+     * @param x argument of the function
+     * @return Returns f(x)
+     */
+    static BigDecimal apply(int function, BigDecimal x) {
+        return switch (FUNCTIONS[function]) {
+            case "sqrt" -> Arithmetic.sqrt(x);
+            case "ln" -> Arithmetic.ln(x);
+            case "log" -> Arithmetic.log(x);
+            case "exp" -> Arithmetic.exp(x);
+            case "sin" -> Arithmetic.sin(x);
+            case "cos" -> Arithmetic.cos(x);
+            case "tan" -> Arithmetic.tan(x);
+            case "asin" -> Arithmetic.asin(x);
+            case "acos" -> Arithmetic.acos(x);
+            case "atan" -> Arithmetic.atan(x);
+            case "sinh" -> Arithmetic.sinh(x);
+            case "cosh" -> Arithmetic.cosh(x);
+            case "tanh" -> Arithmetic.tanh(x);
+            case "asinh" -> Arithmetic.asinh(x);
+            case "acosh" -> Arithmetic.acosh(x);
+            case "atanh" -> Arithmetic.atanh(x);
+            default -> throw new IllegalStateException("Unexpected value: " + FUNCTIONS[function]);
+        };
+    }
+
+    /**
+     * Computes the numeric result of a given function to a given precision
+     * @param function Index of the function in FUNCTIONS
+     * @param x argument of the function
+     * @param mc Precision of the result
+     * @return Returns f(x)
+     */
+    static BigDecimal apply(int function, BigDecimal x, MathContext mc) {
+        return switch (FUNCTIONS[function]) {
+            case "sqrt" -> Arithmetic.sqrt(x, mc);
+            case "ln" -> Arithmetic.ln(x, mc);
+            case "log" -> Arithmetic.log(x, mc);
+            case "exp" -> Arithmetic.exp(x, mc);
+            case "sin" -> Arithmetic.sin(x, mc);
+            case "cos" -> Arithmetic.cos(x, mc);
+            case "tan" -> Arithmetic.tan(x, mc);
+            case "asin" -> Arithmetic.asin(x, mc);
+            case "acos" -> Arithmetic.acos(x, mc);
+            case "atan" -> Arithmetic.atan(x, mc);
+            case "sinh" -> Arithmetic.sinh(x, mc);
+            case "cosh" -> Arithmetic.cosh(x, mc);
+            case "tanh" -> Arithmetic.tanh(x, mc);
+            case "asinh" -> Arithmetic.asinh(x, mc);
+            case "acosh" -> Arithmetic.acosh(x, mc);
+            case "atanh" -> Arithmetic.atanh(x, mc);
+            default -> throw new IllegalStateException("Unexpected value: " + FUNCTIONS[function]);
+        };
+    }
+
+    /**
+     * Finds the opcode of an operator
+     * @param operator The operator to be considered
+     * @return Returns the opcode that performs the operator
+     */
+    private static int opcode(char operator) {
+        return switch (operator) {
+            case '+' -> ADD;
+            case '-' -> SUBTRACT;
+            case '*', Parsing.IMPLICIT_M -> MULTIPLY;
+            case '/', Parsing.IMPLICIT_D -> DIVIDE;
+            case '^' -> POW;
+            default -> throw new IllegalStateException("Unexpected value: " + operator);
+        };
+    }
+
+    /**
+     * Finds the index of a function
+     * @param function Name of the function
+     * @return Returns the index of the function in FUNCTIONS
+     */
+    private static int function(String function) {
+        for (int i = 0; i < FUNCTIONS.length; i++) {
+            if (FUNCTIONS[i].equals(function))
+                return i;
+        }
+
+        throw new IllegalStateException("Unexpected value: " + function);
+    }
+
+    /**
+     * Returns a string representation of the program
+     * @return Returns each instruction in postfix order, separated by spaces
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        for (int pc = 0; pc < code.length; pc++) {
+            if (pc != 0)
+                sb.append(' ');
+
+            sb.append(switch (code[pc]) {
+                case CONST -> constants[code[++pc]].toString();
+                case VAR -> variables[code[++pc]];
+                case FUNC -> FUNCTIONS[code[++pc]];
+                case ADD -> "+";
+                case SUBTRACT -> "-";
+                case MULTIPLY -> "*";
+                case DIVIDE -> "/";
+                case POW -> "^";
+                default -> "?";
+            });
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * A growable list of primitive ints
+     */
+    private static class IntList {
+        private int[] elements = new int[16];
+        private int size;
+
+        void add(int element) {
+            if (size == elements.length)
+                elements = Arrays.copyOf(elements, size * 2);
+            elements[size++] = element;
+        }
+
+        void truncate(int size) {
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(elements, size);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package physics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static physics.Program.*;
+
+/**
+ * Generates a hidden class that evaluates the values of a single Program, once its dimensions have been checked.
+ * The class hard-wires the instructions of the program into straight-line calls to Arithmetic, so that the JIT is
+ * free to inline the whole expression. Since the bytecode never branches, the class file needs no stack map frames.
+ */
+class ProgramGenerator {
+    private static final int CLASS_VERSION = 61;
+    private static final String ARITHMETIC = "physics/Arithmetic";
+    private static final String VALUE = "Ljava/math/BigDecimal;";
+    private static final String VALUE_ARRAY = "[" + VALUE;
+    private static final String FUNCTION_DESCRIPTOR = "(" + VALUE + ")" + VALUE;
+    private static final String OPERATOR_DESCRIPTOR = "(" + VALUE + VALUE + ")" + VALUE;
+
+    // Constant pool tags
+    private static final int UTF8 = 1;
+    private static final int CLASS = 7;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    // Instructions
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int AALOAD = 0x32;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndices = new HashMap<>();
+    private int poolSize = 1;
+
+    /**
+     * Generates and loads a class that evaluates the given instructions
+     * @param code Instructions of the program
+     * @param constants Constants referred to by CONST instructions
+     * @param maxStack Greatest number of operands on the stack at once
+     * @return Returns an instance of the generated class
+     * @throws ReflectiveOperationException If the class could not be loaded
+     */
+    static Compiled generate(int[] code, BigDecimal[] constants, int maxStack) throws ReflectiveOperationException {
+        byte[] bytes = new ProgramGenerator().toClassFile(code, maxStack);
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+        MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(),
+                MethodType.methodType(void.class, BigDecimal[].class));
+
+        try {
+            return (Compiled) constructor.invoke(constants);
+        }
+        catch (Throwable e) {
+            throw new IllegalStateException("Could not instantiate generated program", e);
+        }
+    }
+
+    /**
+     * Builds the class file of a class implementing Compiled for the given instructions
+     * @param code Instructions of the program
+     * @param maxStack Greatest number of operands on the stack at once
+     * @return Returns the bytes of the class file
+     */
+    private byte[] toClassFile(int[] code, int maxStack) {
+        try {
+            int thisClass = classEntry("physics/Program$Generated");
+            int superClass = classEntry("java/lang/Object");
+            int compiled = classEntry("physics/Program$Compiled");
+            int constants = fieldEntry("physics/Program$Generated", "constants", VALUE_ARRAY);
+            int objectInit = methodEntry("java/lang/Object", "<init>", "()V");
+            int codeName = utf8Entry("Code");
+            int fieldName = utf8Entry("constants");
+            int fieldDescriptor = utf8Entry(VALUE_ARRAY);
+            int initName = utf8Entry("<init>");
+            int initDescriptor = utf8Entry("(" + VALUE_ARRAY + ")V");
+            int evaluateName = utf8Entry("evaluate");
+            int evaluateDescriptor = utf8Entry("(" + VALUE_ARRAY + ")" + VALUE);
+
+            // Constructor, which stores the constant pool of the program
+            ByteArrayOutputStream init = new ByteArrayOutputStream();
+            init.write(ALOAD_0);
+            init.write(INVOKESPECIAL);
+            writeShort(init, objectInit);
+            init.write(ALOAD_0);
+            init.write(ALOAD_1);
+            init.write(PUTFIELD);
+            writeShort(init, constants);
+            init.write(RETURN);
+
+            // evaluate, with every instruction of the program written out in order
+            ByteArrayOutputStream evaluate = new ByteArrayOutputStream();
+            for (int pc = 0; pc < code.length; pc++) {
+                switch (code[pc]) {
+                    case CONST -> {
+                        evaluate.write(ALOAD_0);
+                        evaluate.write(GETFIELD);
+                        writeShort(evaluate, constants);
+                        writeIndex(evaluate, code[++pc]);
+                        evaluate.write(AALOAD);
+                    }
+                    case VAR -> {
+                        evaluate.write(ALOAD_1);
+                        writeIndex(evaluate, code[++pc]);
+                        evaluate.write(AALOAD);
+                    }
+                    case FUNC -> {
+                        evaluate.write(INVOKESTATIC);
+                        writeShort(evaluate, methodEntry(ARITHMETIC, FUNCTIONS[code[++pc]], FUNCTION_DESCRIPTOR));
+                    }
+                    default -> {
+                        String method = switch (code[pc]) {
+                            case ADD -> "add";
+                            case SUBTRACT -> "subtract";
+                            case MULTIPLY -> "multiply";
+                            case DIVIDE -> "divide";
+                            case POW -> "pow";
+                            default -> throw new IllegalStateException("Unexpected value: " + code[pc]);
+                        };
+                        evaluate.write(INVOKESTATIC);
+                        writeShort(evaluate, methodEntry(ARITHMETIC, method, OPERATOR_DESCRIPTOR));
+                    }
+                }
+            }
+            evaluate.write(ARETURN);
+
+            if (evaluate.size() > 65535 || poolSize > 65535)
+                throw new IllegalStateException("Program is too large to generate");
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            out.writeShort(poolSize);
+            pool.writeTo(out);
+            out.writeShort(0x0010 | 0x0020); // final, super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(compiled);
+
+            out.writeShort(1);
+            out.writeShort(0x0002 | 0x0010); // private, final
+            out.writeShort(fieldName);
+            out.writeShort(fieldDescriptor);
+            out.writeShort(0);
+
+            out.writeShort(2);
+            writeMethod(out, initName, initDescriptor, codeName, init.toByteArray(), 2);
+            writeMethod(out, evaluateName, evaluateDescriptor, codeName, evaluate.toByteArray(), maxStack + 2);
+
+            out.writeShort(0);
+            return bytes.toByteArray();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes a public method with the given code
+     * @param out Stream the method is written to
+     * @param name Constant pool index of the method name
+     * @param descriptor Constant pool index of the method descriptor
+     * @param codeName Constant pool index of the string "Code"
+     * @param code Bytecode of the method
+     * @param maxStack Greatest depth of the operand stack
+     * @throws IOException If the stream could not be written to
+     */
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName, byte[] code,
+                                    int maxStack) throws IOException {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(2);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    /**
+     * Writes an instruction that pushes an array index
+     * @param out Stream the instruction is written to
+     * @param index The index to be pushed
+     */
+    private static void writeIndex(ByteArrayOutputStream out, int index) {
+        if (index <= Byte.MAX_VALUE) {
+            out.write(BIPUSH);
+            out.write(index);
+        }
+        else if (index <= Short.MAX_VALUE) {
+            out.write(SIPUSH);
+            writeShort(out, index);
+        }
+        else
+            throw new IllegalStateException("Program is too large to generate");
+    }
+
+    /**
+     * Writes a big-endian two byte value
+     * @param out Stream the value is written to
+     * @param value The value to be written
+     */
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Finds or adds a string to the constant pool
+     * @param value The string to be added
+     * @return Returns the constant pool index of the string
+     */
+    private int utf8Entry(String value) throws IOException {
+        Integer index = poolIndices.get("U" + value);
+        if (index != null)
+            return index;
+
+        poolOut.writeByte(UTF8);
+        poolOut.writeUTF(value);
+        poolIndices.put("U" + value, poolSize);
+        return poolSize++;
+    }
+
+    /**
+     * Finds or adds a class to the constant pool
+     * @param name Internal name of the class
+     * @return Returns the constant pool index of the class
+     */
+    private int classEntry(String name) throws IOException {
+        Integer index = poolIndices.get("C" + name);
+        if (index != null)
+            return index;
+
+        int nameIndex = utf8Entry(name);
+        poolOut.writeByte(CLASS);
+        poolOut.writeShort(nameIndex);
+        poolIndices.put("C" + name, poolSize);
+        return poolSize++;
+    }
+
+    /**
+     * Finds or adds a field or method reference to the constant pool
+     * @param tag FIELD_REF or METHOD_REF
+     * @param owner Internal name of the class declaring the member
+     * @param name Name of the member
+     * @param descriptor Descriptor of the member
+     * @return Returns the constant pool index of the reference
+     */
+    private int memberEntry(int tag, String owner, String name, String descriptor) throws IOException {
+        String key = tag + owner + "." + name + descriptor;
+        Integer index = poolIndices.get(key);
+        if (index != null)
+            return index;
+
+        int ownerIndex = classEntry(owner);
+        int nameIndex = utf8Entry(name);
+        int descriptorIndex = utf8Entry(descriptor);
+
+        poolOut.writeByte(NAME_AND_TYPE);
+        poolOut.writeShort(nameIndex);
+        poolOut.writeShort(descriptorIndex);
+        int nameAndType = poolSize++;
+
+        poolOut.writeByte(tag);
+        poolOut.writeShort(ownerIndex);
+        poolOut.writeShort(nameAndType);
+        poolIndices.put(key, poolSize);
+        return poolSize++;
+    }
+
+    /**
+     * Finds or adds a field reference to the constant pool
+     * @param owner Internal name of the class declaring the field
+     * @param name Name of the field
+     * @param descriptor Descriptor of the field
+     * @return Returns the constant pool index of the reference
+     */
+    private int fieldEntry(String owner, String name, String descriptor) throws IOException {
+        return memberEntry(FIELD_REF, owner, name, descriptor);
+    }
+
+    /**
+     * Finds or adds a method reference to the constant pool
+     * @param owner Internal name of the class declaring the method
+     * @param name Name of the method
+     * @param descriptor Descriptor of the method
+     * @return Returns the constant pool index of the reference
+     */
+    private int methodEntry(String owner, String name, String descriptor) throws IOException {
+        return memberEntry(METHOD_REF, owner, name, descriptor);
+    }
+}
@@ -1,26 +1,52 @@
 package physics;
 
-import ch.obermuhlner.math.big.BigDecimalMath;
 import physics.exceptions.IncompatibleUnitsException;
 import physics.exceptions.InvalidDimensionException;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
-import java.util.function.BiFunction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 
 /**
  * Associates dimensions with a scalar value
  */
 public class Quantity {
-    private static final RoundingMode RM = RoundingMode.HALF_EVEN;
-    private static final MathContext MC = new MathContext(100, RM);
-    private static final int SCALE = 100;
+    static final RoundingMode RM = RoundingMode.HALF_EVEN;
+    static final MathContext MC = new MathContext(100, RM);
+    static final int SCALE = 100;
     private static final int SIG_FIGS = 6;
-
+    // Largest divisor recognised in a rational exponent
+    static final int MAX_DIVISOR = 1000;
+    // Distance from an integer within which a multiple of a value is taken to be that integer, covering the
+    // rounding of a division to SCALE digits
+    private static final BigDecimal TOLERANCE = BigDecimal.ONE.movePointLeft(SCALE - 10);
+
+    // Shared instances handed out by the valueOf factories. The arrays are filled when the class is initialised,
+    // so that every thread sees them fully constructed
+    private static final int MAX_POOLED_INTEGER = 1024;
+    private static final int MAX_POOLED_EXPONENT = 30;
+    private static final Quantity[] INTEGERS = new Quantity[MAX_POOLED_INTEGER + 1];
+    private static final Quantity[] POWERS_OF_TEN = new Quantity[2 * MAX_POOLED_EXPONENT + 1];
+    private static final ConcurrentHashMap<Dimension, Quantity> UNIT_QUANTITIES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Quantity> UNIT_STRINGS = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < INTEGERS.length; i++)
+            INTEGERS[i] = new Quantity(i);
+        for (int i = 0; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = new Quantity(BigDecimal.ONE.scaleByPowerOfTen(i - MAX_POOLED_EXPONENT).setScale(SCALE, RM));
+    }
+
+    public static final Quantity ZERO = INTEGERS[0];
+    public static final Quantity ONE = INTEGERS[1];
+
+    // Value in base SI units
     private BigDecimal value;
     private Dimension dimension;
-    private BigDecimal unitScale = BigDecimal.ONE;
+    // Value in the unit it was given in, or null if it was given in base SI units
+    private BigDecimal unitValue;
     private String unitString;
 
     /**
@@ -29,7 +55,7 @@ public class Quantity {
     public Quantity() {
         value = new BigDecimal(0, MC);
         value = value.setScale(SCALE, RM);
-        dimension = new Dimension(0, 0, 0, 0, 0, 0, 0);
+        dimension = Dimension.DIMENSIONLESS;
     }
 
     /**
@@ -37,7 +63,7 @@ public class Quantity {
      * @param value The value of the quantity
      */
     public Quantity(int value) {
-        this(value, new Dimension(0, 0, 0, 0, 0, 0, 0));
+        this(value, Dimension.DIMENSIONLESS);
     }
 
     /**
@@ -55,7 +81,7 @@ public class Quantity {
      */
     private Quantity(BigDecimal value) {
         this.value = value;
-        this.dimension = new Dimension();
+        this.dimension = Dimension.DIMENSIONLESS;
     }
 
     /**
@@ -63,7 +89,7 @@ public class Quantity {
      * @param value Value of the quantity
      * @param dimension Dimensions of the quantity
      */
-    private Quantity(BigDecimal value, Dimension dimension) {
+    Quantity(BigDecimal value, Dimension dimension) {
         this.value = value;
         this.dimension = dimension;
     }
@@ -87,6 +113,7 @@ public class Quantity {
     public Quantity(String str) {
         int separator = -1;
         Quantity a, b;
+        BigDecimal unitScale = BigDecimal.ONE;
 
         // Find where number ends and unit starts
         for (int i = str.length() - 1; i >= 0; i--) {
@@ -108,7 +135,7 @@ public class Quantity {
         //just number
         else if (separator == str.length()) {
             value = new BigDecimal(str, MC);
-            dimension = new Dimension();
+            dimension = Dimension.DIMENSIONLESS;
         }
         //unit and number
         else {
@@ -116,20 +143,149 @@ public class Quantity {
             b = new Quantity(str.substring(separator));
 
             value = a.value;
-            unitScale = b.value.multiply(b.unitScale);
+            unitScale = b.value;
             unitString = b.unitString;
             dimension = b.dimension;
         }
 
         value = value.setScale(SCALE, RM);
+
+        // Convert to base SI units once, keeping the value as given for display
+        if (unitString != null) {
+            unitValue = value;
+            value = value.multiply(unitScale);
+        }
+    }
+
+    /**
+     * Gets a dimensionless quantity with the given value.
+     * Quantities are immutable, so small non-negative integers are shared rather than created again
+     * @param value The value of the quantity
+     * @return Returns a quantity equal to new Quantity(value)
+     */
+    public static Quantity valueOf(int value) {
+        if (value < 0 || value > MAX_POOLED_INTEGER)
+            return new Quantity(value);
+
+        return INTEGERS[value];
+    }
+
+    /**
+     * Gets a quantity with the given value and dimensions.
+     * Quantities of value 1, such as each base SI unit, are shared rather than created again
+     * @param value Value of the quantity
+     * @param dimension Dimensions of the quantity
+     * @return Returns a quantity equal to new Quantity(value, dimension)
+     */
+    public static Quantity valueOf(int value, Dimension dimension) {
+        if (dimension.isDimensionless())
+            return valueOf(value);
+        if (value != 1)
+            return new Quantity(value, dimension);
+
+        return UNIT_QUANTITIES.computeIfAbsent(dimension, d -> new Quantity(1, d));
+    }
+
+    /**
+     * Gets a quantity with the given value in base SI units and dimensions
+     * @param value Value of the quantity
+     * @param dimension Dimensions of the quantity
+     * @return Returns a quantity equal to new Quantity(value.toPlainString(), dimension)
+     */
+    public static Quantity valueOf(BigDecimal value, Dimension dimension) {
+        return new Quantity(value.setScale(SCALE, RM), dimension);
+    }
+
+    /**
+     * Gets a quantity given as a value in a unit, as new Quantity would read it from the two joined, without joining
+     * and parsing them again. The unit is kept for display
+     * @param value Value of the quantity in the unit
+     * @param unit Symbol of the unit, as accepted by Units.getUnit
+     * @return Returns a quantity equal to new Quantity(value + unit)
+     */
+    static Quantity valueOf(BigDecimal value, String unit) {
+        Quantity scale = Units.getUnit(unit);
+        Quantity quantity = new Quantity(value.setScale(SCALE, RM), scale.dimension);
+
+        quantity.unitValue = quantity.value;
+        quantity.unitString = unit;
+        quantity.value = quantity.value.multiply(scale.value);
+        return quantity;
+    }
+
+    /**
+     * Gets a quantity from a string representation.
+     * Small integers and units on their own are shared rather than parsed again
+     * @param str String representation of the quantity
+     * @return Returns a quantity equal to new Quantity(str)
+     */
+    public static Quantity valueOf(String str) {
+        int digits = 0;
+        for (int i = 0; i < str.length(); i++) {
+            if (Character.isDigit(str.charAt(i)))
+                digits++;
+        }
+
+        //just unit
+        if (digits == 0 && !str.isEmpty())
+            return UNIT_STRINGS.computeIfAbsent(str, Quantity::new);
+
+        //small integer
+        if (digits == str.length() && digits <= 4) {
+            int value = Integer.parseInt(str);
+            if (value <= MAX_POOLED_INTEGER)
+                return valueOf(value);
+        }
+
+        return new Quantity(str);
+    }
+
+    /**
+     * Gets a dimensionless power of ten, such as the value of an SI prefix
+     * @param exponent The power of ten
+     * @return Returns a quantity equal to new Quantity("1e" + exponent)
+     */
+    public static Quantity powerOfTen(int exponent) {
+        if (Math.abs(exponent) > MAX_POOLED_EXPONENT)
+            return new Quantity(BigDecimal.ONE.scaleByPowerOfTen(exponent).setScale(SCALE, RM));
+
+        return POWERS_OF_TEN[exponent + MAX_POOLED_EXPONENT];
     }
 
     /**
      * Gives the value of this quantity in base SI units
-     * @return Returns the product of value and unitScale
+     * @return Returns the value, already scaled by the unit it was given in
      */
-    private BigDecimal scaledValue() {
-        return value.multiply(unitScale);
+    BigDecimal scaledValue() {
+        return value;
+    }
+
+    /**
+     * Gives the value of this quantity in the unit it was given in
+     * @return Returns the value before scaling by its unit
+     */
+    private BigDecimal unitValue() {
+        return unitValue == null ? value : unitValue;
+    }
+
+    /**
+     * Gives the single value that stands for this quantity in every operation, as used by Arithmetic
+     * @return Returns the value in base SI units, or null if operations would use differing values.
+     *         This happens for dimensionless quantities with a unit scale, since functions ignore the scale.
+     */
+    BigDecimal getNumericValue() {
+        if (isDimensionless() && unitValue != null)
+            return null;
+
+        return value;
+    }
+
+    /**
+     * Gets the dimensions of this quantity
+     * @return Returns the Dimension of this quantity
+     */
+    Dimension getDimension() {
+        return dimension;
     }
 
     /**
@@ -137,7 +293,7 @@ public class Quantity {
      * @return Returns a quantity that has the negative value of this quantity
      */
     public Quantity negate() {
-        return new Quantity(scaledValue().negate(), dimension);
+        return new Quantity(value.negate(), dimension);
     }
 
     /**
@@ -149,7 +305,7 @@ public class Quantity {
         if (!dimension.equals(augend.dimension))
             throw new IncompatibleUnitsException(dimension.toString(), augend.dimension.toString());
 
-        return new Quantity(scaledValue().add(augend.scaledValue()), dimension);
+        return new Quantity(Arithmetic.add(value, augend.value), dimension);
     }
 
     /**
@@ -161,7 +317,7 @@ public class Quantity {
         if (!dimension.equals(subtrahend.dimension))
             throw new IncompatibleUnitsException(dimension.toString(), subtrahend.dimension.toString());
 
-        return new Quantity(scaledValue().subtract(subtrahend.scaledValue()), dimension);
+        return new Quantity(Arithmetic.subtract(value, subtrahend.value), dimension);
     }
 
     /**
@@ -170,7 +326,8 @@ public class Quantity {
      * @return Returns the product
      */
     public Quantity multiply(Quantity multiplicand) {
-        return new Quantity(scaledValue().multiply(multiplicand.scaledValue()), dimension.add(multiplicand.dimension));
+        return new Quantity(Arithmetic.multiply(value, multiplicand.value),
+                dimension.add(multiplicand.dimension));
     }
 
     /**
@@ -179,7 +336,7 @@ public class Quantity {
      * @return Returns the quotient
      */
     public Quantity divide(Quantity divisor) {
-        return new Quantity(scaledValue().divide(divisor.scaledValue(), RM), dimension.subtract(divisor.dimension));
+        return new Quantity(Arithmetic.divide(value, divisor.value), dimension.subtract(divisor.dimension));
     }
 
     /**
@@ -188,21 +345,43 @@ public class Quantity {
      * @return Returns this quantity to the nth power
      */
     public Quantity pow(Quantity n) {
-        //Check if exponent is dimensionless
-        if (!n.isDimensionless())
-            throw new InvalidDimensionException();
+        Dimension result = powDimension(dimension, n);
 
         // We're dimensionless
         if (isDimensionless())
-            return new Quantity(BigDecimalMath.pow(value, n.value, MC), dimension);
+            return new Quantity(Arithmetic.pow(unitValue(), n.unitValue()), result);
 
         // We're not dimensionless
-        int i = isRational(n.value);
+        return new Quantity(Arithmetic.pow(value, n.unitValue()), result);
+    }
+
+    /**
+     * Finds the dimensions of a quantity raised to a power
+     * @param dimension Dimensions of the base
+     * @param n The exponent
+     * @return Returns the dimensions of the power
+     * @throws InvalidDimensionException If the exponent has dimensions, or the base has dimensions and the exponent
+     *         is not a simple fraction
+     */
+    static Dimension powDimension(Dimension dimension, Quantity n) {
+        //Check if exponent is dimensionless
+        if (!n.isDimensionless())
+            throw new InvalidDimensionException();
+
+        if (dimension.isDimensionless())
+            return dimension;
+
+        BigDecimal exponent = n.unitValue();
+        int i = isRational(exponent);
         if (i == -1)
             throw new InvalidDimensionException();
 
-        return new Quantity(BigDecimalMath.pow(scaledValue(), n.value, MC),
-                dimension.multiply(n.value.multiply(new BigDecimal(i)).intValue()).divide(new BigDecimal(i).intValue()));
+        try {
+            return dimension.multiply(numerator(exponent, i)).divide(i);
+        }
+        catch (ArithmeticException e) {
+            throw new InvalidDimensionException();
+        }
     }
 
     /**
@@ -212,11 +391,11 @@ public class Quantity {
      * @param x The Quantity to apply it to
      * @return Returns a new dimensionless Quantity whose value is the result of the function
      */
-    private static Quantity apply(BiFunction<BigDecimal, MathContext, BigDecimal> func, Quantity x) {
+    private static Quantity apply(UnaryOperator<BigDecimal> func, Quantity x) {
         if (!x.isDimensionless())
             throw new InvalidDimensionException();
 
-        return new Quantity(func.apply(x.value, MC), x.dimension);
+        return new Quantity(func.apply(x.unitValue()), x.dimension);
     }
 
     /**
@@ -225,7 +404,7 @@ public class Quantity {
      * @return Returns the square root of the given quantity
      */
     public static Quantity sqrt(Quantity x) {
-        return new Quantity(BigDecimalMath.sqrt(x.scaledValue(), MC), x.dimension.divide(2));
+        return new Quantity(Arithmetic.sqrt(x.value), x.dimension.divide(2));
     }
 
     /**
@@ -234,7 +413,7 @@ public class Quantity {
      * @return Returns the natural log of the given quantity
      */
     public static Quantity ln(Quantity x) {
-        return apply(BigDecimalMath::log, x);
+        return apply(Arithmetic::ln, x);
     }
 
     /**
@@ -243,7 +422,7 @@ public class Quantity {
      * @return Returns the log (base 10) of the given quantity
      */
     public static Quantity log(Quantity x) {
-        return apply(BigDecimalMath::log10, x);
+        return apply(Arithmetic::log, x);
     }
 
     /**
@@ -252,7 +431,7 @@ public class Quantity {
      * @return Returns the exponential of the given quantity
      */
     public static Quantity exp(Quantity x) {
-        return apply(BigDecimalMath::exp, x);
+        return apply(Arithmetic::exp, x);
     }
 
     /**
@@ -261,7 +440,7 @@ public class Quantity {
      * @return Returns the sin of the given quantity
      */
     public static Quantity sin(Quantity x) {
-        return apply(BigDecimalMath::sin, x);
+        return apply(Arithmetic::sin, x);
     }
 
     /**
@@ -270,7 +449,7 @@ public class Quantity {
      * @return Returns the cos of the given quantity
      */
     public static Quantity cos(Quantity x) {
-        return apply(BigDecimalMath::cos, x);
+        return apply(Arithmetic::cos, x);
     }
 
     /**
@@ -279,7 +458,7 @@ public class Quantity {
      * @return Returns the tan of the given quantity
      */
     public static Quantity tan(Quantity x) {
-        return apply(BigDecimalMath::tan, x);
+        return apply(Arithmetic::tan, x);
     }
 
     /**
@@ -288,7 +467,7 @@ public class Quantity {
      * @return Returns the arcsin of the given quantity
      */
     public static Quantity asin(Quantity x) {
-        return apply(BigDecimalMath::asin, x);
+        return apply(Arithmetic::asin, x);
     }
 
     /**
@@ -297,7 +476,7 @@ public class Quantity {
      * @return Returns the arccos of the given quantity
      */
     public static Quantity acos(Quantity x) {
-        return apply(BigDecimalMath::acos, x);
+        return apply(Arithmetic::acos, x);
     }
 
     /**
@@ -306,7 +485,7 @@ public class Quantity {
      * @return Returns the arctan of the given quantity
      */
     public static Quantity atan(Quantity x) {
-        return apply(BigDecimalMath::atan, x);
+        return apply(Arithmetic::atan, x);
     }
 
     /**
@@ -315,7 +494,7 @@ public class Quantity {
      * @return Returns the hyperbolic sin of the given quantity
      */
     public static Quantity sinh(Quantity x) {
-        return apply(BigDecimalMath::sinh, x);
+        return apply(Arithmetic::sinh, x);
     }
 
     /**
@@ -324,7 +503,7 @@ public class Quantity {
      * @return Returns the hyperbolic cos of the given quantity
      */
     public static Quantity cosh(Quantity x) {
-        return apply(BigDecimalMath::cosh, x);
+        return apply(Arithmetic::cosh, x);
     }
 
     /**
@@ -333,7 +512,7 @@ public class Quantity {
      * @return Returns the hyperbolic tan of the given quantity
      */
     public static Quantity tanh(Quantity x) {
-        return apply(BigDecimalMath::tanh, x);
+        return apply(Arithmetic::tanh, x);
     }
 
     /**
@@ -342,7 +521,7 @@ public class Quantity {
      * @return Returns the hyperbolic arcsin of the given quantity
      */
     public static Quantity asinh(Quantity x) {
-        return apply(BigDecimalMath::asinh, x);
+        return apply(Arithmetic::asinh, x);
     }
 
     /**
@@ -351,7 +530,7 @@ public class Quantity {
      * @return Returns the hyperbolic arccos of the given quantity
      */
     public static Quantity acosh(Quantity x) {
-        return apply(BigDecimalMath::acosh, x);
+        return apply(Arithmetic::acosh, x);
     }
 
     /**
@@ -360,7 +539,7 @@ public class Quantity {
      * @return Returns the hyperbolic arctan of the given quantity
      */
     public static Quantity atanh(Quantity x) {
-        return apply(BigDecimalMath::atanh, x);
+        return apply(Arithmetic::atanh, x);
     }
 
     /**
@@ -374,7 +553,7 @@ public class Quantity {
         if (o == null || getClass() != o.getClass()) return false;
         Quantity quantity = (Quantity) o;
         //Allow for scale to be different between BigDecimals
-        return scaledValue().compareTo(quantity.scaledValue()) == 0 && dimension.equals(quantity.dimension);
+        return value.compareTo(quantity.value) == 0 && dimension.equals(quantity.dimension);
     }
 
     /**
@@ -386,20 +565,57 @@ public class Quantity {
     }
 
     /**
-     * Determines whether a BidDecimal can be given as a ratio of 2 integers
-     * Only checks divisors up to 10
+     * Determines whether a BigDecimal is a ratio of 2 integers, to within the rounding of a division.
+     * Candidate ratios are the convergents of the continued fraction of the value
      * @param bd The BigDecimal to be checked
-     * @return Returns the divisor if rational, -1 otherwise
-     */
-    private int isRational(BigDecimal bd) {
-        //TODO: Make this actually work
-        //Appears to only recognize divisors of 2, 4, 5, and 8
-        for (int i = 1; i < 10; i++) {
-            if (isInteger(bd.multiply(new BigDecimal(i))))
-                return i;
+     * @return Returns the smallest divisor, up to MAX_DIVISOR, if rational, -1 otherwise
+     */
+    static int isRational(BigDecimal bd) {
+        if (isInteger(bd))
+            return 1;
+
+        double x = Math.abs(bd.doubleValue());
+        if (!(x < Integer.MAX_VALUE))
+            return -1;
+
+        BigDecimal abs = bd.abs();
+        long h = 1, hPrevious = 0;
+        long k = 0, kPrevious = 1;
+        double remainder = x;
+
+        while (true) {
+            long term = (long) Math.floor(remainder);
+            long hNext = term * h + hPrevious;
+            long kNext = term * k + kPrevious;
+            if (kNext > MAX_DIVISOR)
+                return -1;
+
+            hPrevious = h;
+            h = hNext;
+            kPrevious = k;
+            k = kNext;
+
+            // The double only suggests the ratio, which is then checked against every digit of the value
+            if (Math.abs(x * k - h) < 1e-9 * k
+                    && abs.multiply(BigDecimal.valueOf(k)).subtract(BigDecimal.valueOf(h)).abs().compareTo(TOLERANCE) < 0)
+                return (int) k;
+
+            double fraction = remainder - term;
+            if (fraction == 0)
+                return -1;
+            remainder = 1 / fraction;
         }
+    }
 
-        return -1;
+    /**
+     * Finds the numerator of a rational BigDecimal over the given divisor
+     * @param bd The BigDecimal
+     * @param divisor Divisor found by isRational
+     * @return Returns the nearest integer to bd * divisor
+     * @throws ArithmeticException If the numerator does not fit in an int
+     */
+    static int numerator(BigDecimal bd, int divisor) {
+        return bd.multiply(BigDecimal.valueOf(divisor)).setScale(0, RM).intValueExact();
     }
 
     /**
@@ -407,8 +623,8 @@ public class Quantity {
      * @param bd The BigDecimal to be checked
      * @return Returns true if integer, false otherwise
      */
-    private boolean isInteger(BigDecimal bd) {
-        return bd.stripTrailingZeros().scale() <= 0;
+    private static boolean isInteger(BigDecimal bd) {
+        return bd.signum() == 0 || bd.scale() <= 0 || bd.stripTrailingZeros().scale() <= 0;
     }
 
     /**
@@ -416,34 +632,8 @@ public class Quantity {
      * @return Returns a string representing the value of this Quantity, with
      * SIG_FIGS significant figures
      */
-    private String valueToString(BigDecimal bd, int sigFigs) {
-        return stripTrailingZeros(bd.setScale(sigFigs - bd.precision() + bd.scale(), RoundingMode.HALF_UP).toString());
-    }
-
-    /**
-     * Removes excess zeroes at the end of a number
-     * @param str The number to be stripped
-     * @return Returns the number with any trailing zeroes after a decimal removed
-     */
-    private String stripTrailingZeros(String str) {
-        int start = -1;
-        int end = str.indexOf('E');
-
-        if (str.indexOf('.') == -1 && end == -1) return str;
-        if (end == -1) end = str.length();
-
-        for (int i = end - 1; i >= 0; i--) {
-            if (str.charAt(i) != '0') {
-                start = i;
-                break;
-            }
-        }
-
-        if (start == end - 1) return str;
-        if (start == -1) return "0";
-        if (start == str.indexOf('.')) start--;
-
-        return str.substring(0, start + 1) + str.substring(end);
+    static String valueToString(BigDecimal bd, int sigFigs) {
+        return SigFigFormatter.format(bd, sigFigs);
     }
 
     /**
@@ -455,10 +645,11 @@ public class Quantity {
         String dimString = (unitString == null ? dimension.toLatexString() : unitString);
         if (!dimString.isEmpty()) dimString = "\\textrm{" + dimString + "}";
 
-        if (value.compareTo(BigDecimal.ONE) == 0 && !isDimensionless())
+        BigDecimal unitValue = unitValue();
+        if (unitValue.compareTo(BigDecimal.ONE) == 0 && !isDimensionless())
             return dimString;
 
-        String valString = valueToString(value, sigFigs);
+        String valString = valueToString(unitValue, sigFigs);
 
         if (valString.contains("E+"))
             valString = valString.replace("E+", "*10^{") + "}";
@@ -474,7 +665,9 @@ public class Quantity {
      * @return Returns a string representation of this quantity
      */
     public String toString(int sigFigs) {
-        return valueToString(scaledValue(), sigFigs) + dimension.toString();
+        StringBuilder sb = new StringBuilder();
+        SigFigFormatter.append(sb, value, sigFigs);
+        return sb.append(dimension).toString();
     }
 
     public String toString() {
@@ -0,0 +1,131 @@
+package physics;
+
+import physics.exceptions.IncompatibleUnitsException;
+
+import java.math.BigDecimal;
+
+import static physics.Quantity.MC;
+
+/**
+ * A mutable running total or product of quantities, for reductions over many terms.
+ * Each step only updates a single value in base SI units. The dimensions of each term are compared by reference
+ * against those already checked, so no intermediate Quantity or Dimension is created.
+ * Sums are exact, matching a chain of Quantity.add calls. Products are rounded to the precision used by functions,
+ * since an exact product grows by the digits of every factor.
+ */
+public class QuantityAccumulator {
+    private BigDecimal value;
+    private Dimension dimension;
+
+    // Dimensions of the last pair of factors found to multiply to the dimensions of the total
+    private Dimension checkedLeft;
+    private Dimension checkedRight;
+
+    /**
+     * Creates an accumulator of value 0 with the given dimensions
+     * @param dimension Dimensions of every term to be added
+     */
+    public QuantityAccumulator(Dimension dimension) {
+        this.value = BigDecimal.ZERO;
+        this.dimension = dimension;
+    }
+
+    /**
+     * Creates an accumulator starting from the given quantity
+     * @param initial The starting value and dimensions
+     */
+    public QuantityAccumulator(Quantity initial) {
+        this.value = initial.scaledValue();
+        this.dimension = initial.getDimension();
+    }
+
+    /**
+     * Adds a quantity to the total in place
+     * @param augend The quantity to be added
+     * @return Returns this accumulator
+     * @throws IncompatibleUnitsException If the quantity does not have the dimensions of the total
+     */
+    public QuantityAccumulator add(Quantity augend) {
+        check(augend.getDimension());
+        value = value.add(augend.scaledValue());
+        return this;
+    }
+
+    /**
+     * Subtracts a quantity from the total in place
+     * @param subtrahend The quantity to be subtracted
+     * @return Returns this accumulator
+     * @throws IncompatibleUnitsException If the quantity does not have the dimensions of the total
+     */
+    public QuantityAccumulator subtract(Quantity subtrahend) {
+        check(subtrahend.getDimension());
+        value = value.subtract(subtrahend.scaledValue());
+        return this;
+    }
+
+    /**
+     * Multiplies the total by a quantity in place, to 100 significant figures
+     * @param multiplicand The quantity to be multiplied by
+     * @return Returns this accumulator
+     */
+    public QuantityAccumulator multiply(Quantity multiplicand) {
+        Dimension factor = multiplicand.getDimension();
+        if (!factor.isDimensionless()) {
+            dimension = dimension.add(factor);
+            checkedLeft = null;
+        }
+
+        value = value.multiply(multiplicand.scaledValue(), MC);
+        return this;
+    }
+
+    /**
+     * Adds the product of two quantities to the total in place, without rounding the product
+     * @param multiplier The first factor
+     * @param multiplicand The second factor
+     * @return Returns this accumulator
+     * @throws IncompatibleUnitsException If the product does not have the dimensions of the total
+     */
+    public QuantityAccumulator multiplyAdd(Quantity multiplier, Quantity multiplicand) {
+        Dimension left = multiplier.getDimension();
+        Dimension right = multiplicand.getDimension();
+
+        if (left != checkedLeft || right != checkedRight) {
+            check(left.add(right));
+            checkedLeft = left;
+            checkedRight = right;
+        }
+
+        value = value.add(multiplier.scaledValue().multiply(multiplicand.scaledValue()));
+        return this;
+    }
+
+    /**
+     * Sets the total back to 0, keeping its dimensions
+     */
+    public void reset() {
+        value = BigDecimal.ZERO;
+    }
+
+    /**
+     * Gets the current total
+     * @return Returns an immutable quantity with the value and dimensions of the total
+     */
+    public Quantity toQuantity() {
+        return new Quantity(value, dimension);
+    }
+
+    /**
+     * Checks that a term has the dimensions of the total
+     * @param term Dimensions of the term
+     * @throws IncompatibleUnitsException If the dimensions differ
+     */
+    private void check(Dimension term) {
+        if (term != dimension)
+            throw new IncompatibleUnitsException(dimension.toString(), term.toString());
+    }
+
+    public String toString() {
+        return toQuantity().toString();
+    }
+}
@@ -0,0 +1,185 @@
+package physics;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * An exact ratio of two integers, kept in lowest terms with a positive denominator.
+ * Used to evaluate programs without rounding, converting to a BigDecimal only where a value cannot be kept exact.
+ */
+final class Rational {
+    static final Rational ZERO = new Rational(BigInteger.ZERO, BigInteger.ONE);
+    static final Rational ONE = new Rational(BigInteger.ONE, BigInteger.ONE);
+
+    private final BigInteger numerator;
+    private final BigInteger denominator;
+
+    /**
+     * Creates a Rational from a numerator and denominator that are already in lowest terms
+     * @param numerator The numerator
+     * @param denominator The denominator, which must be positive
+     */
+    private Rational(BigInteger numerator, BigInteger denominator) {
+        this.numerator = numerator;
+        this.denominator = denominator;
+    }
+
+    /**
+     * Creates a Rational in lowest terms
+     * @param numerator The numerator
+     * @param denominator The denominator
+     * @return Returns numerator / denominator
+     * @throws ArithmeticException If the denominator is zero
+     */
+    static Rational of(BigInteger numerator, BigInteger denominator) {
+        if (denominator.signum() == 0)
+            throw new ArithmeticException("Division by zero");
+        if (numerator.signum() == 0)
+            return ZERO;
+
+        if (denominator.signum() < 0) {
+            numerator = numerator.negate();
+            denominator = denominator.negate();
+        }
+
+        BigInteger gcd = numerator.gcd(denominator);
+        if (!gcd.equals(BigInteger.ONE)) {
+            numerator = numerator.divide(gcd);
+            denominator = denominator.divide(gcd);
+        }
+
+        return new Rational(numerator, denominator);
+    }
+
+    /**
+     * Gives the exact value of a BigDecimal
+     * @param value The value to be converted
+     * @return Returns a Rational equal to the value
+     */
+    static Rational valueOf(BigDecimal value) {
+        int scale = value.scale();
+
+        if (scale <= 0)
+            return new Rational(value.unscaledValue().multiply(BigInteger.TEN.pow(-scale)), BigInteger.ONE);
+
+        return of(value.unscaledValue(), BigInteger.TEN.pow(scale));
+    }
+
+    /**
+     * Adds two Rationals
+     * @param augend The Rational to be added
+     * @return Returns this + augend
+     */
+    Rational add(Rational augend) {
+        if (denominator.equals(augend.denominator))
+            return of(numerator.add(augend.numerator), denominator);
+
+        return of(numerator.multiply(augend.denominator).add(augend.numerator.multiply(denominator)),
+                denominator.multiply(augend.denominator));
+    }
+
+    /**
+     * Subtracts two Rationals
+     * @param subtrahend The Rational to be subtracted
+     * @return Returns this - subtrahend
+     */
+    Rational subtract(Rational subtrahend) {
+        return add(subtrahend.negate());
+    }
+
+    /**
+     * Multiplies two Rationals
+     * @param multiplicand The Rational to be multiplied by
+     * @return Returns this * multiplicand
+     */
+    Rational multiply(Rational multiplicand) {
+        return of(numerator.multiply(multiplicand.numerator), denominator.multiply(multiplicand.denominator));
+    }
+
+    /**
+     * Divides two Rationals
+     * @param divisor The Rational to be divided by
+     * @return Returns this / divisor
+     * @throws ArithmeticException If the divisor is zero
+     */
+    Rational divide(Rational divisor) {
+        return of(numerator.multiply(divisor.denominator), denominator.multiply(divisor.numerator));
+    }
+
+    /**
+     * Raises this Rational to an integer power
+     * @param n The exponent
+     * @return Returns this^n
+     * @throws ArithmeticException If this is zero and the exponent is negative
+     */
+    Rational pow(int n) {
+        if (n < 0)
+            return ONE.divide(pow(-n));
+
+        // Powers of a fraction in lowest terms are still in lowest terms
+        return new Rational(numerator.pow(n), denominator.pow(n));
+    }
+
+    /**
+     * Gives the negative of this Rational
+     * @return Returns -this
+     */
+    Rational negate() {
+        return new Rational(numerator.negate(), denominator);
+    }
+
+    /**
+     * Checks whether this Rational is an integer
+     * @return Returns true if the denominator is 1, false otherwise
+     */
+    boolean isInteger() {
+        return denominator.equals(BigInteger.ONE);
+    }
+
+    /**
+     * Gives the numerator of this Rational
+     * @return Returns the numerator in lowest terms
+     */
+    BigInteger getNumerator() {
+        return numerator;
+    }
+
+    /**
+     * Converts this Rational to a BigDecimal, exactly where it has a terminating decimal expansion
+     * @param mc Precision of the result, if it must be rounded
+     * @return Returns the value of this Rational
+     */
+    BigDecimal toBigDecimal(MathContext mc) {
+        BigDecimal numerator = new BigDecimal(this.numerator);
+        if (isInteger())
+            return numerator;
+
+        // Only denominators of the form 2^a 5^b divide a power of ten
+        BigInteger rest = denominator.shiftRight(denominator.getLowestSetBit());
+        BigInteger five = BigInteger.valueOf(5);
+        while (rest.mod(five).signum() == 0)
+            rest = rest.divide(five);
+
+        if (rest.equals(BigInteger.ONE))
+            return numerator.divide(new BigDecimal(denominator));
+
+        return numerator.divide(new BigDecimal(denominator), mc);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Rational rational)) return false;
+        return numerator.equals(rational.numerator) && denominator.equals(rational.denominator);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * numerator.hashCode() + denominator.hashCode();
+    }
+
+    public String toString() {
+        return isInteger() ? numerator.toString() : numerator + "/" + denominator;
+    }
+}
@@ -0,0 +1,181 @@
+package physics;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Writes values rounded to a number of significant figures, with trailing zeros after the decimal point removed.
+ * The digits are rounded straight from the unscaled value and laid out as BigDecimal.toString would, without
+ * building an intermediate BigDecimal or String.
+ * An instance reuses one buffer, and remembers the last quantity it formatted so that an unchanged result is not
+ * formatted again.
+ */
+public class SigFigFormatter {
+    // Powers of ten used to drop digits, filled in as needed
+    private static final BigInteger[] POWERS_OF_TEN = new BigInteger[512];
+
+    private final StringBuilder sb = new StringBuilder();
+    private BigDecimal lastValue;
+    private Dimension lastDimension;
+    private int lastSigFigs;
+    private String last;
+
+    /**
+     * Formats a quantity as Quantity.toString does, reusing the last string if the quantity and significant
+     * figures are unchanged
+     * @param quantity The quantity to be formatted
+     * @param sigFigs Number of significant figures
+     * @return Returns the string representation of the quantity
+     */
+    public String format(Quantity quantity, int sigFigs) {
+        BigDecimal value = quantity.scaledValue();
+        Dimension dimension = quantity.getDimension();
+
+        if (last != null && sigFigs == lastSigFigs && dimension == lastDimension
+                && (value == lastValue || value.compareTo(lastValue) == 0))
+            return last;
+
+        sb.setLength(0);
+        append(sb, value, sigFigs);
+        sb.append(dimension);
+
+        lastValue = value;
+        lastDimension = dimension;
+        lastSigFigs = sigFigs;
+        last = sb.toString();
+        return last;
+    }
+
+    /**
+     * Formats a value to a number of significant figures
+     * @param bd The value to be formatted
+     * @param sigFigs Number of significant figures
+     * @return Returns the rounded value, with trailing zeros after the decimal point removed
+     */
+    static String format(BigDecimal bd, int sigFigs) {
+        StringBuilder sb = new StringBuilder(24);
+        append(sb, bd, sigFigs);
+        return sb.toString();
+    }
+
+    /**
+     * Appends a value rounded half up to a number of significant figures.
+     * Gives the same string as rounding with setScale, calling toString, and removing trailing zeros after the
+     * decimal point
+     * @param sb The builder to be appended to
+     * @param bd The value to be formatted
+     * @param sigFigs Number of significant figures
+     */
+    static void append(StringBuilder sb, BigDecimal bd, int sigFigs) {
+        int drop = bd.precision() - sigFigs;
+        int scale = bd.scale() - drop;
+        BigInteger digits = bd.unscaledValue().abs();
+
+        if (drop > 0) {
+            BigInteger[] divided = digits.divideAndRemainder(powerOfTen(drop));
+            digits = divided[0];
+            if (divided[1].shiftLeft(1).compareTo(powerOfTen(drop)) >= 0)
+                digits = digits.add(BigInteger.ONE);
+        }
+
+        int start = sb.length();
+        if (bd.signum() < 0 && digits.signum() != 0)
+            sb.append('-');
+
+        // Digits of the coefficient, padded with any zeros gained by increasing the scale
+        int coefficient = sb.length();
+        if (digits.bitLength() < Long.SIZE)
+            sb.append(digits.longValue());
+        else
+            sb.append(digits);
+        for (int i = drop; i < 0 && digits.signum() != 0; i++)
+            sb.append('0');
+
+        layout(sb, coefficient, scale);
+        stripTrailingZeros(sb, start);
+    }
+
+    /**
+     * Places the decimal point and exponent in a coefficient, following BigDecimal.toString
+     * @param sb The builder ending with the digits of the coefficient
+     * @param coefficient Index of the first digit
+     * @param scale Scale of the value
+     */
+    private static void layout(StringBuilder sb, int coefficient, int scale) {
+        int length = sb.length() - coefficient;
+        long adjusted = -(long) scale + (length - 1);
+
+        if (scale == 0)
+            return;
+
+        if (scale > 0 && adjusted >= -6) {
+            int point = length - scale;
+            if (point > 0)
+                sb.insert(coefficient + point, '.');
+            else {
+                sb.insert(coefficient, "0.");
+                for (int i = point; i < 0; i++)
+                    sb.insert(coefficient + 2, '0');
+            }
+            return;
+        }
+
+        if (length > 1)
+            sb.insert(coefficient + 1, '.');
+        if (adjusted != 0) {
+            sb.append('E');
+            if (adjusted > 0)
+                sb.append('+');
+            sb.append(adjusted);
+        }
+    }
+
+    /**
+     * Removes excess zeroes at the end of a number, before any exponent
+     * @param sb The builder ending with the number
+     * @param start Index of the start of the number
+     */
+    private static void stripTrailingZeros(StringBuilder sb, int start) {
+        int point = sb.indexOf(".", start);
+        int end = sb.indexOf("E", start);
+
+        if (point == -1 && end == -1) return;
+        if (end == -1) end = sb.length();
+
+        int last = -1;
+        for (int i = end - 1; i >= start; i--) {
+            if (sb.charAt(i) != '0') {
+                last = i;
+                break;
+            }
+        }
+
+        if (last == end - 1) return;
+        if (last == -1) {
+            sb.setLength(start);
+            sb.append('0');
+            return;
+        }
+        if (last == point) last--;
+
+        sb.delete(last + 1, end);
+    }
+
+    /**
+     * Gets a power of ten
+     * @param n The exponent
+     * @return Returns 10^n
+     */
+    private static BigInteger powerOfTen(int n) {
+        if (n >= POWERS_OF_TEN.length)
+            return BigInteger.TEN.pow(n);
+
+        BigInteger power = POWERS_OF_TEN[n];
+        if (power == null) {
+            power = BigInteger.TEN.pow(n);
+            POWERS_OF_TEN[n] = power;
+        }
+
+        return power;
+    }
+}
@@ -22,7 +22,7 @@ public class Token {
         this.type = type;
 
         if (type == NUMBER || type == UNIT)
-            value = new Quantity(token);
+            value = Quantity.valueOf(token);
         else
             this.token = token;
     }
@@ -4,9 +4,7 @@ import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.ObjectMapper;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Handles definitions of constants and non-SI units
@@ -17,6 +15,8 @@ public class Units extends Quantity {
     private static final String[] bigPrefixes = {"da", "h", "k", "M", "G", "T", "P", "E", "Z", "Y", "R", "Q"};
     private static final HashMap<String, Units> UNITS;
     private static final HashMap<String, Units> CONSTANTS;
+    private static final HashMap<String, Quantity> PREFIXES;
+    private static final HashMap<String, Quantity> RESOLVED_UNITS;
 
     private String alias;
 
@@ -48,36 +48,39 @@ public class Units extends Quantity {
      * @return Returns the unit with the given alias
      */
     public static Quantity getUnit(String str) {
-        // No prefix
-        if (str.equals("g")) {
-            return new Quantity("0.001", new Dimension("kg"));
-        }
-        if (UNITS.containsKey(str)) {
-            return UNITS.get(str);
-        }
-        try {
-            Dimension dim = new Dimension(str);
-            return new Quantity("1", dim);
-        }
-        catch (Exception ignored) {}
+        Quantity unit = RESOLVED_UNITS.get(str);
 
-        // Prefix
-        // For the only 2 character prefix: da
-        if (str.length() == 1)
+        if (unit == null)
             throw new RuntimeException("Unrecognized unit " + str);
-        Quantity prefix = Units.getPrefix(str.substring(0, 2));
-        // 1 character prefix
-        if (prefix == null) {
-            prefix = Units.getPrefix(str.substring(0, 1));
 
-            if (prefix == null)
-                throw new RuntimeException("Unrecognized unit " + str);
+        return unit;
+    }
 
-            return getUnit(str.substring(1)).multiply(prefix);
+    /**
+     * Builds the table of every unit, with and without each SI prefix.
+     * Where two combinations share a symbol, the unprefixed unit takes precedence, then the "da" prefix,
+     * then the single character prefixes.
+     * @return Returns a map from each unit symbol to the quantity it represents
+     */
+    private static HashMap<String, Quantity> resolveUnits() {
+        HashMap<String, Quantity> baseUnits = new HashMap<>();
+        baseUnits.put("g", new Quantity("0.001", Dimension.of("kg")));
+        baseUnits.putAll(UNITS);
+        for (String symbol : Dimension.getSIUnitStrings()) {
+            baseUnits.putIfAbsent(symbol, Quantity.valueOf(1, Dimension.of(symbol)));
         }
-        else {
-            return getUnit(str.substring(2)).multiply(prefix);
+
+        HashMap<String, Quantity> resolved = new HashMap<>(baseUnits);
+        List<String> prefixes = new ArrayList<>(PREFIXES.keySet());
+        prefixes.sort(Comparator.comparingInt(o -> -o.length()));
+
+        for (String prefix : prefixes) {
+            for (Map.Entry<String, Quantity> unit : baseUnits.entrySet()) {
+                resolved.putIfAbsent(prefix + unit.getKey(), unit.getValue().multiply(PREFIXES.get(prefix)));
+            }
         }
+
+        return resolved;
     }
 
     public static Set<String> getUnitStrings() {
@@ -103,23 +106,7 @@ public class Units extends Quantity {
      * @return Returns a dimensionless quantity with the value associated with the prefix, null if prefix not recognized
      */
     public static Quantity getPrefix(String str) {
-        int pow;
-
-        for (int i = 0; i < smallPrefixes.length; i++) {
-            if (str.equals(smallPrefixes[i]) || str.equals(bigPrefixes[i])) {
-                pow = switch (i) {
-                    case 0 -> 1;
-                    case 1 -> 2;
-                    default -> (i - 1) * 3;
-                };
-
-                if (str.equals(smallPrefixes[i]))
-                    pow *= -1;
-                return new Quantity("1e" + pow);
-            }
-        }
-
-        return null;
+        return PREFIXES.get(str);
     }
 
     /**
@@ -144,14 +131,28 @@ public class Units extends Quantity {
         List<JSONEntry> jsonEntries = mapper.readValue(file, new TypeReference<>() {});
         CONSTANTS = new HashMap<>();
         for (JSONEntry constant : jsonEntries) {
-            CONSTANTS.put(constant.symbol(), new Units(constant.value(), new Dimension(constant.dims()), constant.symbol()));
+            CONSTANTS.put(constant.symbol(), new Units(constant.value(), Dimension.of(constant.dims()), constant.symbol()));
         }
 
         file = new File("src/main/resources/data/additional_units.json");
         jsonEntries = mapper.readValue(file, new TypeReference<>() {});
         UNITS = new HashMap<>();
         for (JSONEntry constant : jsonEntries) {
-            UNITS.put(constant.symbol(), new Units(constant.value(), new Dimension(constant.dims()), constant.symbol()));
+            UNITS.put(constant.symbol(), new Units(constant.value(), Dimension.of(constant.dims()), constant.symbol()));
         }
+
+        PREFIXES = new HashMap<>();
+        for (int i = 0; i < smallPrefixes.length; i++) {
+            int pow = switch (i) {
+                case 0 -> 1;
+                case 1 -> 2;
+                default -> (i - 1) * 3;
+            };
+
+            PREFIXES.put(smallPrefixes[i], Quantity.powerOfTen(-pow));
+            PREFIXES.put(bigPrefixes[i], Quantity.powerOfTen(pow));
+        }
+
+        RESOLVED_UNITS = resolveUnits();
     }
 }
\ No newline at end of file
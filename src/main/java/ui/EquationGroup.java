@@ -11,9 +11,12 @@ import javafx.scene.layout.HBox;
 import org.scilab.forge.jlatexmath.TeXConstants;
 import org.scilab.forge.jlatexmath.TeXFormula;
 import org.scilab.forge.jlatexmath.TeXIcon;
+import physics.Approximation;
 import physics.Equation;
+import physics.Lexer;
 import physics.Parsing;
 import physics.Quantity;
+import physics.SigFigFormatter;
 
 import java.awt.image.BufferedImage;
 
@@ -22,16 +25,22 @@ import java.awt.image.BufferedImage;
  */
 public class EquationGroup extends HBox {
     private Equation equation;
+    private Equation renderedEquation;
+    private Equation resultEquation;
+    private Approximation result;
     private final TextField equationField;
     private final TextField resultField;
     private final ImageView imageField;
     private final EquationSet equationSet;
+    private final Lexer lexer;
+    private final SigFigFormatter formatter = new SigFigFormatter();
 
     /**
      * Creates an empty EquationGroup
      */
     public EquationGroup(EquationSet equationSet) {
         this.equationSet = equationSet;
+        lexer = new Lexer();
         equationField = new TextField();
         resultField = new TextField();
         imageField = new ImageView();
@@ -97,17 +106,26 @@ public class EquationGroup extends HBox {
 
     /**
      * Reads what is currently in the input field and attempts to construct an Equation from it.
+     * Equations are looked up in the parse cache first, and otherwise only the portion of the input that changed
+     * since the last call is tokenized again.
      * Updates the image field if successful.
      * @return Returns true if an Equation was successfully constructed, false otherwise.
      */
     public boolean parseEquation() {
         try {
-            equation = new Equation(Parsing.tokenizer(equationField.getText(), equationSet.getVariableStrings()), equationSet.getVariables());
-            setImage(equation.toLatexString(equationSet.getSigFigs()), imageField);
+            equation = equationSet.getParseCache().get(equationField.getText(), equationSet.getVariableStrings(),
+                    text -> new Equation(Parsing.tokenizer(text, equationSet.getVariableStrings(), lexer), equationSet.getVariables()));
+
+            if (equation != renderedEquation) {
+                setImage(equation.toLatexString(equationSet.getSigFigs()), imageField);
+                renderedEquation = equation;
+            }
         }
         catch (Exception e) {
             resultField.setText(e.getMessage());
             imageField.imageProperty().set(null);
+            renderedEquation = null;
+            result = null;
             return false;
         }
 
@@ -116,15 +134,22 @@ public class EquationGroup extends HBox {
 
     /**
      * Reevalutes the Equation and updates the output field, without reconstructing the Equation from the input field.
+     * Equations that do not define a variable are only evaluated to the displayed number of significant figures.
      * If evaluation fails, the output field is updated with the corresponding error message.
      * @return Returns the result if the Equation is successfully evaluated. Returns null if not.
      */
     public Quantity evaluate() {
+        result = null;
+
         if (equation != null) {
             try {
-                Quantity result = equation.evaluate();
-                resultField.setText(equation.evaluate().toString(equationSet.getSigFigs()));
-                return result;
+                // Variables are kept in full, since later equations build on them
+                int sigFigs = equationSet.getSigFigs();
+                result = equation.isAssignment() ? new Approximation(equation.evaluate(), 0)
+                        : equation.approximate(sigFigs);
+                resultEquation = equation;
+                resultField.setText(formatter.format(result.quantity(), sigFigs));
+                return result.quantity();
             }
             catch (Exception e) {
                 resultField.setText(e.getMessage());
@@ -134,6 +159,19 @@ public class EquationGroup extends HBox {
         return null;
     }
 
+    /**
+     * Updates the output field after the number of significant figures has changed.
+     * The last result is reused if it is accurate enough for the new setting, and otherwise the Equation is reevaluated.
+     */
+    public void updateSigFigs() {
+        int sigFigs = equationSet.getSigFigs();
+
+        if (result != null && resultEquation == equation && result.isStable(sigFigs))
+            resultField.setText(formatter.format(result.quantity(), sigFigs));
+        else
+            evaluate();
+    }
+
     /**
      * Checks whether this EquationGroup is empty
      * @return Returns true if the equation is the empty string, false otherwise
@@ -2,6 +2,9 @@ package ui;
 
 import javafx.scene.layout.VBox;
 import physics.Equation;
+import physics.FunctionCache;
+import physics.ParseCache;
+import physics.Program;
 import physics.Quantity;
 
 import java.util.*;
@@ -11,17 +14,28 @@ import java.util.function.Function;
  * Handles interactions with the equation boxes
  */
 public class EquationSet extends VBox {
+    private static final int PARSE_CACHE_SIZE = 1024;
+    private static final int FUNCTION_CACHE_SIZE = 4096;
+    // Programs are evaluated with one process-wide function cache, shared by every set
+    private static final FunctionCache FUNCTION_CACHE = new FunctionCache(FUNCTION_CACHE_SIZE);
+
     private int sigFigs;
+    private final ParseCache parseCache;
     private final HashSet<EquationGroup> validEquations;
     private final HashMap<String, Quantity> variables;
     private final HashMap<String, HashSet<EquationGroup>> dependencyGraph;
 
+    static {
+        Program.setFunctionCache(FUNCTION_CACHE);
+    }
+
     public EquationSet(int sigFigs) {
         super();
         this.sigFigs = sigFigs;
         validEquations = new HashSet<>();
         variables = new HashMap<>();
         dependencyGraph = new HashMap<>();
+        parseCache = new ParseCache(PARSE_CACHE_SIZE);
 
         getChildren().add(new EquationGroup(this));
     }
@@ -30,6 +44,11 @@ public class EquationSet extends VBox {
         return sigFigs;
     }
 
+    /**
+     * Sets the number of significant figures results are displayed with.
+     * Results that are already accurate enough are displayed again without being reevaluated.
+     * @param sigFigs The number of significant figures
+     */
     public void setSigFigs(int sigFigs) {
         this.sigFigs = sigFigs;
         javafx.collections.ObservableList<javafx.scene.Node> children = getChildren();
@@ -37,7 +56,7 @@ public class EquationSet extends VBox {
 
         for (int i = 0; i < children.size(); i++) {
             eg = (EquationGroup) children.get(i);
-            eg.evaluate();
+            eg.updateSigFigs();
         }
     }
 
@@ -90,6 +109,23 @@ public class EquationSet extends VBox {
         return variables.keySet();
     }
 
+    /**
+     * Gets the cache of parsed Equations shared by the Equation Groups
+     * @return Returns the parse cache
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
+    }
+
+    /**
+     * Gets the cache of function results used while evaluating the equations of every set.
+     * It can be disabled with FunctionCache.setEnabled.
+     * @return Returns the function cache
+     */
+    public static FunctionCache getFunctionCache() {
+        return FUNCTION_CACHE;
+    }
+
     private void addValidEquation(EquationGroup eqGroup) {
         validEquations.add(eqGroup);
 
@@ -116,8 +152,9 @@ public class EquationSet extends VBox {
         validEquations.remove(eqGroup);
 
         Equation eq = eqGroup.getEquation();
-        if (eq.isAssignment())
+        if (eq.isAssignment()) {
             variables.remove(eq.getVariable());
+        }
 
         for (String dependency : eq.variableUsage) {
             dependencyGraph.get(dependency).remove(eqGroup);
@@ -0,0 +1,288 @@
+package physics;
+
+import org.junit.jupiter.api.Test;
+import physics.exceptions.IncompatibleUnitsException;
+import physics.exceptions.InvalidDimensionException;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EquationTest {
+    private static final Map<String, Quantity> values = Map.of("x", new Quantity(3));
+
+    @Test
+    void evaluate() {
+        assertEquals(new Quantity(10), parse("1 + x*3").evaluate());
+        assertEquals(new Quantity(2), parse("sqrt(x + 1)").evaluate());
+        assertEquals(new Quantity(-5), parse("(x - 8)/(x - 2)^2").evaluate());
+    }
+
+    @Test
+    void undefinedVariable() {
+        Equation equation = new Equation(Parsing.tokenizer("x + 1", Set.of("x")), s -> null);
+        RuntimeException e = assertThrows(RuntimeException.class, equation::evaluate);
+        assertEquals("Variable \"x\" is undefined.", e.getMessage());
+    }
+
+    @Test
+    void deepEquation() {
+        String equation = "x" + "+1".repeat(20000);
+        assertEquals(new Quantity(20003), parse(equation).evaluate());
+    }
+
+    @Test
+    void generatedMatchesInterpreted() {
+        String[] equations = {"1 + x*3", "sqrt(x + 1)", "(x - 8)/(x - 2)^2", "x*5m/(2s) + 3m/s", "sin(x)^2 + cos(x)^2",
+                "x^x - ln(x)exp(x)", "sqrt(x*1m^3)^4"};
+
+        for (String string : equations) {
+            Program program = parse(string).getProgram();
+            Quantity[] slots = {values.get("x")};
+            Quantity expected = program.interpret(slots);
+
+            Program.setGenerationThreshold(0);
+            try {
+                assertEquals(expected, program.run(slots), string);
+                assertTrue(program.isGenerated(), string);
+            }
+            finally {
+                Program.setGenerationThreshold(1000);
+            }
+        }
+    }
+
+    @Test
+    void dimensionsChecked() {
+        // Conflicts between constants are found while parsing
+        assertThrows(IncompatibleUnitsException.class, () -> parse("x + 1m + 1s"));
+        assertThrows(InvalidDimensionException.class, () -> parse("sin(x*2m/1s)*1s/1m + ln(1m)"));
+
+        // Conflicts with variables are found on evaluation
+        Equation equation = parse("x + 1m");
+        assertThrows(IncompatibleUnitsException.class, equation::evaluate);
+
+        // A dimensioned base raised to a variable power is checked on evaluation
+        Program program = parse("(x*1m)^(x/3) + 1m").getProgram();
+        assertEquals(new Quantity("4m"), program.run(new Quantity[]{new Quantity(3)}));
+        assertThrows(IncompatibleUnitsException.class, () -> program.run(new Quantity[]{new Quantity(2)}));
+        assertThrows(InvalidDimensionException.class, () -> program.run(new Quantity[]{new Quantity("1.2345")}));
+
+        // Operands that happen to equal an opcode are not mistaken for a constant exponent
+        Map<String, Quantity> one = Map.of("x", new Quantity(1));
+        assertEquals(new Quantity("9m").multiply(new Quantity("1m")),
+                new Equation(Parsing.tokenizer("(9m^2)^(x/x)", one.keySet()), one::get).evaluate());
+        assertEquals(new Quantity("4m").multiply(new Quantity("1m")),
+                new Equation(Parsing.tokenizer("(2m)^(1+x)", one.keySet()), one::get).evaluate());
+        assertEquals(new Quantity(11), new Equation(Parsing.tokenizer("x*1 + x*2 + x*3 + x*4 + (2m)^(1-x)",
+                one.keySet()), one::get).evaluate());
+    }
+
+    @Test
+    void lookups() {
+        assertSame(Parsing.replaceFunction("M(12C)"), Parsing.replaceFunction("M(12C)"));
+        assertSame(Parsing.replaceFunction("MMass(H2O)"), Parsing.replaceFunction("MMass(H2O)"));
+        assertEquals(new Quantity("12000000uDa"), Parsing.replaceFunction("M(12C)"));
+
+        // Subtrees with no variables are folded into one constant when the equation is built
+        assertEquals("x 10 +", parse("x + (2*3 + sqrt(16))").getProgram().toString());
+        assertEquals("x 2 *", parse("x*(M(12C)/M(12C)*2)").getProgram().toString());
+    }
+
+    @Test
+    void parseCache() {
+        ParseCache cache = new ParseCache(2);
+        Set<String> x = Set.of("x");
+        Equation equation = cache.get("x + 1", x, EquationTest::parse);
+        assertSame(equation, cache.get("x + 1", Set.of("x"), EquationTest::parse));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // The same string parsed against another set of variables is parsed again
+        Set<String> xy = Set.of("x", "y");
+        assertNotSame(equation, cache.get("x + 1", xy, EquationTest::parse));
+        assertEquals(2, cache.getMisses());
+
+        // Failed parses are not cached
+        assertThrows(RuntimeException.class, () -> cache.get("x + @", xy, EquationTest::parse));
+        assertThrows(RuntimeException.class, () -> cache.get("x + @", xy, EquationTest::parse));
+        assertEquals(4, cache.getMisses());
+
+        // Looking up "x + 1" makes "x * 2" the least recently used, so it is evicted by "x - 3"
+        cache.get("x * 2", xy, EquationTest::parse);
+        cache.get("x + 1", xy, EquationTest::parse);
+        cache.get("x - 3", xy, EquationTest::parse);
+        assertEquals(2, cache.getHits());
+        cache.get("x + 1", xy, EquationTest::parse);
+        assertEquals(3, cache.getHits());
+        cache.get("x * 2", xy, EquationTest::parse);
+        assertEquals(7, cache.getMisses());
+        assertEquals(0.3, cache.getHitRate());
+    }
+
+    @Test
+    void parseCacheAcrossAssignments() {
+        // Follows EquationSet as "a = 5" is edited to "a = 56": the variable is removed, the other lines are parsed
+        // again without it, and then it is defined again
+        ParseCache cache = new ParseCache(16);
+        Map<String, Quantity> variables = new HashMap<>();
+        Function<String, Equation> parser = text -> new Equation(Parsing.tokenizer(text, variables.keySet()),
+                variables::get);
+        String[] lines = {"a*2", "a + 1"};
+
+        variables.put("a", null);
+        cache.get("a = 5", variables.keySet(), parser);
+        for (String line : lines)
+            cache.get(line, variables.keySet(), parser);
+        assertEquals(3, cache.getMisses());
+
+        variables.remove("a");
+        for (String line : lines)
+            assertThrows(RuntimeException.class, () -> cache.get(line, variables.keySet(), parser));
+
+        variables.put("a", null);
+        cache.get("a = 56", variables.keySet(), parser);
+        long hits = cache.getHits();
+        for (String line : lines)
+            cache.get(line, variables.keySet(), parser);
+        assertEquals(hits + lines.length, cache.getHits());
+
+        variables.put("a", new Quantity(56));
+        assertEquals(new Quantity(112), cache.get("a*2", variables.keySet(), parser).evaluate());
+    }
+
+    @Test
+    void functionCache() {
+        FunctionCache cache = new FunctionCache(16);
+        Equation equation = parse("sin(x)*cos(x) + sin(x)");
+        Quantity uncached = equation.evaluate();
+
+        try {
+            Program.setFunctionCache(cache);
+            assertEquals(uncached, equation.evaluate());
+            assertEquals(1, cache.getHits());
+            assertEquals(2, cache.getMisses());
+
+            assertEquals(uncached, equation.evaluate());
+            assertEquals(4, cache.getHits());
+
+            cache.setEnabled(false);
+            assertEquals(uncached, equation.evaluate());
+            assertEquals(4, cache.getHits());
+        }
+        finally {
+            Program.setFunctionCache(null);
+        }
+    }
+
+    @Test
+    void exactArithmetic() {
+        Equation thirds = parse("x/7*7 - x");
+        Equation units = parse("x*1au/1pc*1pc/1au");
+
+        try {
+            Program.setExactArithmetic(true);
+            assertEquals(0, thirds.evaluate().getNumericValue().signum());
+            assertEquals(new Quantity(3), units.evaluate());
+            assertEquals(0, new BigDecimal(484).divide(new BigDecimal(49), Quantity.MC)
+                    .compareTo(parse("(x + 1/7)^2").evaluate().getNumericValue()));
+        }
+        finally {
+            Program.setExactArithmetic(false);
+        }
+
+        assertNotEquals(0, thirds.evaluate().getNumericValue().signum());
+    }
+
+    @Test
+    void decayChain() {
+        double halfLife = Nuclides.getHalfLife("14C").scaledValue().doubleValue();
+        assertEquals(0.5, value("Pop(14C, 14C, " + halfLife + "s)"), 1e-13);
+        assertEquals(0.5, value("Pop(14C, 14N, " + halfLife + "s)"), 1e-13);
+        assertEquals(0.5 * Math.log(2) / halfLife, value("Act(14C, 14C, " + halfLife + "s)"), 1e-25);
+
+        // Bateman solution for 210Pb -> 210Bi -> 210Po, with its small alpha branches
+        assertEquals(0.007113065118552793, value("Pop(210Pb, 210Po, 1e7s)"), 1e-15);
+        assertEquals(0.0006124189857577275, value("Pop(210Pb, 210Bi, 1e7s)"), 1e-15);
+        assertEquals(0.0021198641543787033, value("Pop(210Pb, 206Pb, 1e7s)"), 1e-15);
+
+        assertThrows(IncompatibleUnitsException.class, () -> parse("Pop(14C, 14N, 1m)").evaluate());
+
+        // After 1e17 s the 238U chain is in secular equilibrium, with every long-lived member as active as the parent
+        double uranium = value("Act(238U, 238U, 1e17s)");
+        for (String member : new String[]{"234Th", "234U", "230Th", "226Ra", "222Rn", "210Pb", "210Po"})
+            assertEquals(1, value("Act(238U, " + member + ", 1e17s)") / uranium, 1e-3, member);
+    }
+
+    @Test
+    void molarMass() {
+        // NaCl is sodium and chlorine, rather than nitrogen, an unknown "a", carbon and chlorine
+        double NaCl = Chemistry.getMolarMass("Na") + Chemistry.getMolarMass("Cl");
+        double CaOH2 = Chemistry.getMolarMass("Ca") + 2 * (Chemistry.getMolarMass("O") + Chemistry.getMolarMass("H"));
+
+        assertEquals(NaCl / 1000, value("MMass(NaCl)"), 1e-12);
+        assertEquals(CaOH2 / 1000, value("MMass(Ca(OH)2)"), 1e-12);
+        assertEquals("NaCl", ChemicalFormula.parse("NaCl").toString());
+        assertEquals(2, ChemicalFormula.parse("Ca(OH)2").getElementCounts()[8]);
+    }
+
+    private static double value(String equation) {
+        return parse(equation).evaluate().scaledValue().doubleValue();
+    }
+
+    @Test
+    void approximationMatchesFull() {
+        try {
+            for (PrecisionPolicy policy : new PrecisionPolicy[]{PrecisionPolicy.DEFAULT, new PrecisionPolicy(false, 2)}) {
+                Program.setPrecisionPolicy(policy);
+                assertApproximationsMatch();
+            }
+        }
+        finally {
+            Program.setPrecisionPolicy(PrecisionPolicy.DEFAULT);
+        }
+    }
+
+    private static void assertApproximationsMatch() {
+        String[] equations = {"1 + x*3", "sqrt(x + 1)", "(x - 8)/(x - 2)^2", "x*5m/(2s) + 3m/s", "sin(x)^2 + cos(x)^2",
+                "x^x - ln(x)exp(x)", "x - 1.2345", "1/(x - 3)", "tan(x) + atanh(1/x) + acosh(x + 1)", "x*1.2345"};
+        Random random = new Random(7);
+        Map<String, Quantity> values = new HashMap<>();
+        Function<String, Quantity> lookup = values::get;
+
+        for (int i = 0; i < 200; i++) {
+            values.put("x", new Quantity(String.valueOf(random.nextInt(4000) / 1000.0 + 1)));
+            int sigFigs = 1 + random.nextInt(20);
+            int otherSigFigs = 1 + random.nextInt(20);
+
+            for (String string : equations) {
+                Equation equation = new Equation(Parsing.tokenizer(string, Set.of("x")), lookup);
+                Quantity expected;
+
+                try {
+                    expected = equation.evaluate();
+                }
+                catch (RuntimeException e) {
+                    assertThrows(e.getClass(), () -> equation.approximate(sigFigs), string);
+                    continue;
+                }
+
+                Approximation approximation = equation.approximate(sigFigs);
+                assertTrue(approximation.isStable(sigFigs), string);
+                assertEquals(expected.toString(sigFigs), approximation.quantity().toString(sigFigs), string + " at " + values);
+
+                if (approximation.isStable(otherSigFigs))
+                    assertEquals(expected.toString(otherSigFigs), approximation.quantity().toString(otherSigFigs), string);
+            }
+        }
+    }
+
+    private static Equation parse(String equation) {
+        return new Equation(Parsing.tokenizer(equation, values.keySet()), values::get);
+    }
+}
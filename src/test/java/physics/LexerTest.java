@@ -0,0 +1,189 @@
+package physics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static physics.TokenType.*;
+
+public class LexerTest {
+    private static final Set<String> variables = Set.of("x", "v_0", "\\alpha", "t_{1}", "Q");
+
+    @Test
+    void matchesRegexTokenizer() {
+        String[] equations = {
+                "1+2",
+                "3.5E-3m/s",
+                "2E5",
+                "2Em",
+                "12.5kg*9.81m/s^2",
+                "5 km + 300 m",
+                "sqrt(2)*sin(x)",
+                "asinh(0.5)+acos(0.1)+cosh(2)",
+                "ln(3)log(4)exp(5)",
+                "10MeV",
+                "3daN",
+                "2ug + 4mg",
+                "1min + 2h + 3s",
+                "1au/1pc",
+                "4atm - 2bar",
+                "100cal",
+                "6mol*8.314J/(mol*K)",
+                "5Pa*2m^2",
+                "x*v_0 + \\alpha t_{1}",
+                "Q/(4con(pi) x)",
+                "-3+x",
+                "con(c)^2",
+                "M(12C)",
+                "BE(4He)/4",
+                "MMass(H2O)",
+                "MMass(Ca(OH)2)",
+                "2MMass(NaCl)",
+                "(1+2)*(3-4)/5",
+                "  7   ",
+                "",
+        };
+
+        for (String equation : equations)
+            assertTokensEqual(regexScan(equation, variables), Lexer.scan(equation, variables), equation);
+    }
+
+    @Test
+    void unidentifiedToken() {
+        for (String equation : new String[]{"1 + @", "# 2", "3 y 4", "5$"}) {
+            RuntimeException expected = assertThrows(RuntimeException.class, () -> regexScan(equation, variables));
+            RuntimeException actual = assertThrows(RuntimeException.class, () -> Lexer.scan(equation, variables));
+            assertEquals(expected.getMessage(), actual.getMessage());
+        }
+    }
+
+    @Test
+    void variablesChange() {
+        assertThrows(RuntimeException.class, () -> Lexer.scan("y+1", Set.of("x")));
+        assertEquals(VARIABLE, Lexer.scan("y+1", Set.of("x", "y")).get(0).type);
+        assertThrows(RuntimeException.class, () -> Lexer.scan("y+1", Set.of("x")));
+    }
+
+    @Test
+    void incrementalMatchesScan() {
+        Lexer lexer = new Lexer();
+        String target = "12.5kg*9.81m/s^2 + 3E5daN*x - sqrt(v_0)MMass(H2O) + 4min/2.0E-3Q";
+
+        // Typing one character at a time
+        for (int i = 0; i <= target.length(); i++)
+            assertLexEqual(lexer, target.substring(0, i));
+
+        // Random edits anywhere in the string
+        Random random = new Random(42);
+        String alphabet = "0123456789.E+-*/^ mkgsNxQh";
+        for (int i = 0; i < 2000; i++) {
+            int start = random.nextInt(target.length() + 1);
+            int end = Math.min(target.length(), start + random.nextInt(3));
+            StringBuilder insert = new StringBuilder();
+            for (int j = random.nextInt(3); j > 0; j--)
+                insert.append(alphabet.charAt(random.nextInt(alphabet.length())));
+
+            assertLexEqual(lexer, target);
+            assertLexEqual(lexer, target.substring(0, start) + insert + target.substring(end));
+        }
+    }
+
+    private static void assertLexEqual(Lexer lexer, String equation) {
+        List<Token> expected;
+
+        try {
+            expected = Lexer.scan(equation, variables);
+        }
+        catch (RuntimeException e) {
+            assertThrows(RuntimeException.class, () -> lexer.lex(equation, variables), equation);
+            return;
+        }
+
+        assertTokensEqual(expected, lexer.lex(equation, variables), equation);
+    }
+
+    private static void assertTokensEqual(List<Token> expected, List<Token> actual, String equation) {
+        assertEquals(expected.size(), actual.size(), equation);
+
+        for (int i = 0; i < expected.size(); i++) {
+            Token a = expected.get(i);
+            Token b = actual.get(i);
+
+            assertEquals(a.type, b.type, equation);
+            if (a.type == NUMBER || a.type == UNIT) {
+                assertEquals(a.getValue(), b.getValue(), equation);
+                assertEquals(a.getValue().toLatexString(6), b.getValue().toLatexString(6), equation);
+            }
+            else
+                assertEquals(a.toString(), b.toString(), equation);
+        }
+    }
+
+    /**
+     * Reference implementation of the regular expression based tokenizer that Lexer replaced
+     */
+    private static List<Token> regexScan(String equation, Set<String> variables) {
+        String group1 = "(\\d+\\.?\\d*(?:E[-+]?\\d+)?)|";
+        String group2 = "([()^+/*-])|";
+        String group3 = "(sqrt|ln|log|exp|a?(?:sin|cos|tan|sec|csc|cot)h?)|";
+        String group4 = "((?:con|M|BE|HL|MMass)\\([^)]+\\))|";
+
+        List<String> units = new ArrayList<>(Dimension.getSIUnitStrings());
+        units.set(units.indexOf("kg"), "g");
+        units.addAll(Units.getUnitStrings());
+        units.sort(Comparator.comparingInt(o -> -o.length()));
+
+        String group5 = "((?:[QRYZEPTGMkhadcmunpfzyrq]|da)?(?:" + String.join("|", units) + "))";
+        String group6 = variables.isEmpty() ? "" : "|(" + String.join("|", variables) + ")";
+        String joinedGroup = (group5 + group6).replaceAll("\\\\", "\\\\\\\\").replaceAll("\\{", "\\\\{");
+        Matcher matcher = Pattern.compile(group1 + group2 + group3 + group4 + joinedGroup).matcher(equation);
+
+        List<Token> tokens = new ArrayList<>();
+        int expectedStart = 0;
+
+        while (matcher.find()) {
+            String tokenString = matcher.group();
+            int group = 1;
+            while (matcher.start(group) == -1)
+                group++;
+
+            if (expectedStart != matcher.start()) {
+                String unidentified = equation.substring(expectedStart, matcher.start());
+                if (!unidentified.matches("\\s+"))
+                    throw new RuntimeException("Unidentified token: \"" + unidentified + "\"");
+                expectedStart += unidentified.length();
+            }
+
+            if (group == 4) {
+                int index = Parsing.findBracketPair(equation, matcher.start() + tokenString.indexOf('('));
+                tokenString = equation.substring(matcher.start(), index + 1);
+                matcher.region(index + 1, equation.length());
+                tokens.add(new Token(Parsing.replaceFunction(tokenString)));
+            }
+            else {
+                TokenType type = switch (group) {
+                    case 1 -> NUMBER;
+                    case 2 -> switch (tokenString.charAt(0)) {
+                        case '(' -> LBRACKET;
+                        case ')' -> RBRACKET;
+                        default -> OPERATOR;
+                    };
+                    case 3 -> FUNCTION;
+                    case 5 -> UNIT;
+                    default -> VARIABLE;
+                };
+                tokens.add(new Token(tokenString, type));
+            }
+
+            expectedStart += tokenString.length();
+        }
+
+        if (expectedStart != equation.length() && !equation.substring(expectedStart).matches("\\s+"))
+            throw new RuntimeException("Unidentified token: \"" + equation.substring(expectedStart) + "\"");
+
+        return tokens;
+    }
+}
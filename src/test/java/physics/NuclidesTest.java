@@ -0,0 +1,127 @@
+package physics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import physics.exceptions.IncompatibleUnitsException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NuclidesTest {
+    private static final Path GROUND_STATES = Path.of("src/main/resources/nuclides/ground_states.csv");
+    private static final int ROWS = 3367;
+
+    @Test
+    void snapshotRegenerated(@TempDir Path directory) throws IOException {
+        Path csv = Files.copy(GROUND_STATES, directory.resolve("ground_states.csv"));
+        Path snapshot = directory.resolve("cache").resolve("ground_states.bin");
+
+        NuclideTable table = NuclideTable.open(csv, snapshot, ROWS);
+        assertEquals(ROWS, table.size());
+        assertEquals(Files.getLastModifiedTime(csv).toMillis(), generatedFrom(snapshot));
+
+        // A snapshot of the unchanged .csv file is used as it is
+        FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(snapshot, written);
+        NuclideTable.open(csv, snapshot, ROWS);
+        assertEquals(written, Files.getLastModifiedTime(snapshot));
+
+        // Touching the .csv file generates it again
+        FileTime touched = FileTime.fromMillis(Files.getLastModifiedTime(csv).toMillis() + 60000);
+        Files.setLastModifiedTime(csv, touched);
+        table = NuclideTable.open(csv, snapshot, ROWS);
+        assertNotEquals(written, Files.getLastModifiedTime(snapshot));
+        assertEquals(touched.toMillis(), generatedFrom(snapshot));
+        assertEquals(Nuclides.getTable().getRow(92, 146), table.getRow(92, 146));
+    }
+
+    @Test
+    void snapshotTruncated(@TempDir Path directory) throws IOException {
+        Path csv = Files.copy(GROUND_STATES, directory.resolve("ground_states.csv"));
+        Path snapshot = directory.resolve("ground_states.bin");
+        NuclideTable.open(csv, snapshot, ROWS);
+        byte[] complete = Files.readAllBytes(snapshot);
+
+        // A snapshot cut short, with its header intact, is generated again rather than read past its end
+        Files.write(snapshot, Arrays.copyOf(complete, complete.length / 2));
+        NuclideTable table = NuclideTable.open(csv, snapshot, ROWS);
+        assertEquals(Nuclides.getTable().getRow(92, 146), table.getRow(92, 146));
+        assertArrayEquals(complete, Files.readAllBytes(snapshot));
+
+        // As is one whose header claims more strings than it holds
+        ByteBuffer.wrap(complete).order(ByteOrder.LITTLE_ENDIAN).putInt(36, Integer.MAX_VALUE);
+        Files.write(snapshot, complete);
+        assertEquals("U", NuclideTable.open(csv, snapshot, ROWS).getSymbol(table.getRow(92, 146)));
+    }
+
+    @Test
+    void parseNuclide() {
+        for (String carbon : new String[]{"14C", "14-C", "C14", "14 C", "C-14", " 14C "})
+            assertArrayEquals(new int[]{6, 14}, Nuclides.parseNuclide(carbon), carbon);
+        assertArrayEquals(new int[]{7, 14}, Nuclides.parseNuclide("14N"));
+        assertArrayEquals(new int[]{0, 1}, Nuclides.parseNuclide("1Nn"));
+        assertArrayEquals(new int[]{92, 238}, Nuclides.parseNuclide("U238"));
+
+        for (String invalid : new String[]{"14 15", "C N", "14", "C", "", "-", "99999999999C"}) {
+            RuntimeException e = assertThrows(RuntimeException.class, () -> Nuclides.parseNuclide(invalid), invalid);
+            assertEquals("Unrecognized nuclide: " + invalid, e.getMessage());
+        }
+        RuntimeException e = assertThrows(RuntimeException.class, () -> Nuclides.parseNuclide("14Xx"));
+        assertEquals("Unrecognized element: Xx", e.getMessage());
+    }
+
+    @Test
+    void query() {
+        NuclideTable table = Nuclides.getTable();
+
+        List<Nuclide> uranium = Nuclides.query().protons(92).stream().toList();
+        assertTrue(uranium.contains(new Nuclide(92, 235)) && uranium.contains(new Nuclide(92, 238)));
+        assertTrue(uranium.stream().allMatch(nuclide -> nuclide.Z() == 92));
+        assertEquals(count(row -> table.getZ(row) == 92), uranium.size());
+
+        Quantity second = new Quantity("1s");
+        Quantity day = new Quantity("86400s");
+        List<Nuclide> halfLives = Nuclides.query().halfLife(second, day).stream().toList();
+        assertEquals(count(row -> table.getValue(row, NuclideTable.HALF_LIFE) >= 1
+                && table.getValue(row, NuclideTable.HALF_LIFE) <= 86400), halfLives.size());
+        assertTrue(halfLives.stream().allMatch(nuclide -> nuclide.getHalfLife().scaledValue().doubleValue() >= 1
+                && nuclide.getHalfLife().scaledValue().doubleValue() <= 86400));
+        assertFalse(halfLives.isEmpty());
+        assertThrows(IncompatibleUnitsException.class, () -> Nuclides.query().halfLife(second, new Quantity("1m")));
+
+        List<Nuclide> betaEmitters = Nuclides.query().decayMode("B-").massNumber(100, 120).parallelStream().toList();
+        assertEquals(count(row -> table.getZ(row) + table.getN(row) >= 100 && table.getZ(row) + table.getN(row) <= 120
+                && Arrays.asList(table.getDecayModes(row)).contains("B-")), betaEmitters.size());
+        assertTrue(betaEmitters.contains(new Nuclide(43, 101)));
+        assertTrue(betaEmitters.stream().allMatch(nuclide -> nuclide.A() >= 100 && nuclide.A() <= 120
+                && Arrays.asList(nuclide.getDecayModes()).contains("B-")));
+    }
+
+    /**
+     * Counts the rows of the nuclide data that satisfy a condition, by checking every row
+     * @param condition The condition
+     * @return Returns the number of rows that satisfy it
+     */
+    private static long count(IntPredicate condition) {
+        return IntStream.range(0, Nuclides.getTable().size()).filter(condition).count();
+    }
+
+    /**
+     * Reads the modification time of the .csv file a snapshot was generated from
+     * @param snapshot Path of the snapshot
+     * @return Returns the modification time recorded in the header of the snapshot
+     */
+    private static long generatedFrom(Path snapshot) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(snapshot)).order(ByteOrder.LITTLE_ENDIAN).getLong(16);
+    }
+}
@@ -2,8 +2,15 @@ package physics;
 
 import org.junit.jupiter.api.Test;
 import physics.exceptions.IncompatibleUnitsException;
+import physics.exceptions.InvalidDimensionException;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class QuantityTest {
@@ -50,6 +57,17 @@ public class QuantityTest {
 
     @Test
     void pow() {
+        Quantity third = new Quantity(1).divide(new Quantity(3));
+        Quantity volume = new Quantity("8m").multiply(new Quantity("1m")).multiply(new Quantity("1m"));
+
+        assertEquals(new Quantity("4m").multiply(new Quantity("1m")), new Quantity("2m").pow(new Quantity(2)));
+        assertEquals(new Quantity("0.25"), new Quantity("2").pow(new Quantity(-2)));
+        assertEquals(new Quantity("-8"), new Quantity("-2").pow(new Quantity(3)));
+        assertEquals(new Quantity("2m"), volume.pow(third));
+        assertEquals("4m^2", volume.pow(third.multiply(new Quantity(2))).toString());
+        assertEquals("1.25992", new Quantity(2).pow(third).toString());
+        assertEquals("8m^3/2", new Quantity("4m").pow(new Quantity("1.5")).toString());
+        assertThrows(InvalidDimensionException.class, () -> c.pow(new Quantity("1.2345")));
     }
 
     @Test
@@ -87,6 +105,108 @@ public class QuantityTest {
         assertEquals("1238\\textrm{au}", (new Quantity("1238au").toLatexString(6)));
     }
 
+    @Test
+    void accumulator() {
+        QuantityAccumulator sum = new QuantityAccumulator(c);
+        sum.add(new Quantity("10mm")).subtract(c);
+        assertEquals(new Quantity("0.01m"), sum.toQuantity());
+        assertThrows(IncompatibleUnitsException.class, () -> sum.add(d));
+
+        QuantityAccumulator work = new QuantityAccumulator(Dimension.of("J"));
+        work.multiplyAdd(c, d).multiplyAdd(d, c);
+        assertEquals(c.multiply(d).add(d.multiply(c)), work.toQuantity());
+        assertThrows(IncompatibleUnitsException.class, () -> work.multiplyAdd(c, c));
+
+        QuantityAccumulator product = new QuantityAccumulator(b);
+        product.multiply(c);
+        assertEquals(b.multiply(c), product.toQuantity());
+    }
+
+    @Test
+    void valueToStringMatchesSetScale() {
+        Random random = new Random(11);
+
+        for (int i = 0; i < 20000; i++) {
+            BigDecimal value = new BigDecimal(new BigInteger(1 + random.nextInt(400), random), random.nextInt(420) - 110);
+            if (random.nextBoolean())
+                value = value.negate();
+            int sigFigs = random.nextInt(25);
+
+            String expected = value.setScale(sigFigs - value.precision() + value.scale(), RoundingMode.HALF_UP).toString();
+            int end = expected.indexOf('E') == -1 ? expected.length() : expected.indexOf('E');
+            if (expected.indexOf('.') != -1 || end != expected.length()) {
+                String mantissa = expected.substring(0, end).replaceAll("0+$", "").replaceAll("\\.$", "");
+                expected = mantissa.isEmpty() ? "0" : mantissa + expected.substring(end);
+            }
+
+            assertEquals(expected, Quantity.valueToString(value, sigFigs), value + " at " + sigFigs);
+        }
+    }
+
+    @Test
+    void valueOf() {
+        assertSame(Quantity.valueOf(12), Quantity.valueOf("12"));
+        assertSame(Quantity.ONE, Quantity.valueOf(1));
+        assertSame(Quantity.valueOf("km"), Quantity.valueOf("km"));
+        assertSame(Quantity.valueOf(1, Dimension.of("m")), Quantity.valueOf(1, Dimension.of("m")));
+        assertSame(Quantity.powerOfTen(-9), Quantity.powerOfTen(-9));
+
+        assertEquals(new Quantity("12").toString(), Quantity.valueOf("12").toString());
+        assertEquals(new Quantity("km").toString(), Quantity.valueOf("km").toString());
+        assertEquals(new Quantity("12.5km").toString(), Quantity.valueOf("12.5km").toString());
+        assertEquals(new Quantity("1e-9").toString(), Quantity.powerOfTen(-9).toString());
+        assertEquals(new Quantity("1e40").toString(), Quantity.powerOfTen(40).toString());
+        assertEquals(0, Quantity.valueOf("1000000").scaledValue().compareTo(new BigDecimal(1000000)));
+    }
+
+    @Test
+    void dimension() {
+        Dimension metre = Dimension.of("m");
+        Dimension second = Dimension.of("s");
+
+        // Interned, however they are reached
+        assertSame(metre, Dimension.of(0, 1, 0, 0, 0, 0, 0));
+        assertSame(metre, metre.divide(2).multiply(2));
+        assertSame(Dimension.of("Hz"), second.invert());
+        assertSame(Dimension.DIMENSIONLESS, metre.subtract(metre));
+
+        // Lanes are added separately, including carries from negative exponents
+        Dimension speed = Dimension.of(-1, 1, 0, 0, 0, 0, 0);
+        assertSame(Dimension.of(-2, 2, 0, 0, 0, 0, 0), speed.add(speed));
+        assertSame(Dimension.of(-1, 126, 0, 0, 0, 0, 0),
+                Dimension.of(-128, 127, 0, 0, 0, 0, 0).add(Dimension.of(127, -1, 0, 0, 0, 0, 0)));
+        assertThrows(InvalidDimensionException.class, () -> metre.multiply(100).add(metre.multiply(100)));
+        assertThrows(InvalidDimensionException.class, () -> second.multiply(-100).add(second.multiply(-100)));
+        assertThrows(InvalidDimensionException.class, () -> metre.multiply(127).add(metre));
+
+        // Fractional exponents over different denominators
+        assertSame(metre.multiply(5).divide(6), metre.divide(2).add(metre.divide(3)));
+        assertEquals("s^1/2m^1/3", second.divide(2).add(metre.divide(3)).toString());
+        assertSame(second, second.divide(6).add(second.multiply(5).divide(6)));
+
+        // Limits of multiply and divide
+        assertSame(Dimension.of(0, 127, 0, 0, 0, 0, 0), metre.multiply(127));
+        assertThrows(InvalidDimensionException.class, () -> metre.multiply(128));
+        assertThrows(InvalidDimensionException.class, () -> metre.multiply(-129));
+        assertSame(metre, metre.divide(255).multiply(255));
+        assertThrows(InvalidDimensionException.class, () -> metre.divide(256));
+        assertThrows(InvalidDimensionException.class, () -> metre.divide(2).divide(3).divide(50));
+        assertThrows(ArithmeticException.class, () -> metre.divide(0));
+    }
+
+    @Test
+    void units() {
+        assertEquals(Units.getUnit("eV").multiply(Quantity.powerOfTen(6)), Units.getUnit("MeV"));
+        assertEquals(new Quantity("10N"), Units.getUnit("daN"));
+        assertEquals(new Quantity("1E-9kg"), Units.getUnit("ug"));
+        assertEquals(new Quantity("0.001m"), Units.getUnit("mm"));
+
+        // Unprefixed units take precedence over a prefix, such as P or k, followed by a unit
+        assertEquals(Quantity.valueOf(1, Dimension.of("Pa")), Units.getUnit("Pa"));
+        assertSame(Quantity.valueOf(1, Dimension.of("kg")), Units.getUnit("kg"));
+        assertThrows(RuntimeException.class, () -> Units.getUnit("dda"));
+    }
+
     @Test
     void testToString() {
         assertEquals("0", (new Quantity("0.00")).toString());